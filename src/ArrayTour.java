@@ -0,0 +1,138 @@
+/**
+ * This class is the plain array representation of the tour, with the
+ * position of every city kept as the inverse of the array.
+ * Flips cost O(n), so it is meant for small instances and as a reference
+ * to cross-check the other representations.
+ */
+public class ArrayTour implements Tour {
+    /*
+     * Instance variables
+     */
+
+    // The number of cities
+    private int size;
+
+    // The cities in the order they are visited
+    private int[] tour;
+
+    // The position of every city in the tour (the inverse of tour)
+    private int[] position;
+
+    /**
+     * Constructor that takes the initial order of the cities
+     * @param int[] the cities in the order they are visited
+     */
+    public ArrayTour(int[] order) {
+        this.size = order.length;
+        this.tour = order.clone();
+        this.position = new int[size];
+        for(int i = 0; i < size; ++i) {
+            this.position[tour[i]] = i;
+        }
+    }
+
+    /**
+     * @see Tour#size()
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @see Tour#next(int)
+     */
+    public int next(int city) {
+        int i = position[city] + 1;
+        return tour[i == size? 0: i];
+    }
+
+    /**
+     * @see Tour#prev(int)
+     */
+    public int prev(int city) {
+        int i = position[city];
+        return tour[i == 0? size - 1: i - 1];
+    }
+
+    /**
+     * Getter that returns the position of a city in the array
+     * @param int the city
+     * @return int its position
+     */
+    public int getPosition(int city) {
+        return this.position[city];
+    }
+
+    /**
+     * Getter that returns the city at a position of the array
+     * @param int the position
+     * @return int the city
+     */
+    public int getCity(int index) {
+        return this.tour[index];
+    }
+
+    /**
+     * @see Tour#between(int, int, int)
+     */
+    public boolean between(int a, int b, int c) {
+        int pa = position[a], pb = position[b], pc = position[c];
+        if(pa <= pc) {
+            return pa <= pb && pb <= pc;
+        }
+        return pb >= pa || pb <= pc;
+    }
+
+    /**
+     * Reverses the path from a to b, or the rest of the tour when it is
+     * shorter (it results in the same cycle)
+     * @see Tour#flip(int, int)
+     */
+    public void flip(int a, int b) {
+        int i = position[a];
+        int j = position[b];
+        int length = j - i;
+        if(length < 0) length += size;
+        length++;
+
+        if(2 * length > size) {
+            // Reverse the complement instead
+            i = j + 1 == size? 0: j + 1;
+            j = position[a] == 0? size - 1: position[a] - 1;
+            length = size - length;
+        }
+
+        for(int s = length / 2; s > 0; --s) {
+            int ci = tour[i];
+            int cj = tour[j];
+            tour[i] = cj;
+            position[cj] = i;
+            tour[j] = ci;
+            position[ci] = j;
+            if(++i == size) i = 0;
+            if(--j < 0) j = size - 1;
+        }
+    }
+
+    /**
+     * @see Tour#toArray()
+     */
+    public int[] toArray() {
+        return this.tour.clone();
+    }
+
+    /**
+     * This function verifies that the position index is the inverse of the tour
+     * @param None
+     * @return void
+     * @throws IllegalStateException when both are out of sync
+     */
+    public void checkPositions() {
+        for(int i = 0; i < size; ++i) {
+            if(position[tour[i]] != i) {
+                throw new IllegalStateException("City " + tour[i] + " is at " + i + " but indexed at " + position[tour[i]]);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,502 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class solves a list of instances without any interaction, so it can
+ * be scripted. The instances are solved several at a time, each one with its
+ * own time limit, and every run writes one row of CSV or JSON (one object per
+ * line) with its results. The final tour of every run is saved in the TSPLIB
+ * tour format, in a file named after the instance and its position in the
+ * list, so instances with the same name in different folders do not
+ * overwrite each other's tours.
+ *
+ * With --alpha the 10 alpha-nearest cities (HeldKarp) are added to the 10
+ * nearest ones of every city, the given time being spent on the lower bound,
+ * which is reported as well. The merged lists pay off on the clustered
+ * instances and from random tours (lu980, rw1621, fi10639, and every run of
+ * --runs); from the greedy tour on small instances such as qa194 the nearest
+ * neighbors alone do as well, without the time of the bound.
+ * With --off-heap the instances and the tours are kept off the heap
+ * (SegmentProblem), which needs java --add-modules jdk.incubator.foreign.
+ * With --iterated the whole time limit is used: once the tour is a local
+ * optimum it is kicked and optimized again (runIteratedAlgorithm).
+ * With --runs n every instance is solved n times from random tours and the
+ * best tour is kept (MultiStartSolver); the instances are then solved one at
+ * a time, the threads being used by the runs. With --partition n every
+ * instance is split into regions of at most n cities solved on the threads
+ * and stitched (PartitionSolver), for instances of 100000 cities and more;
+ * the instances are solved one at a time as well.
+ *
+ * Usage: java BatchRunner [--time-limit ms] [--threads n] [--format csv|json]
+ *                         [--output file] [--tours folder] [--seed n]
+ *                         [--alpha ms] [--off-heap] [--iterated] [--runs n]
+ *                         [--partition n] file.tsp ...
+ */
+public class BatchRunner {
+    /*
+     * Instance variables
+     */
+
+    // The instances to solve
+    private List<File> files;
+
+    // The time limit of every run in ms, 0 for no limit
+    private long timeLimit;
+
+    // The number of instances solved at the same time
+    private int threads;
+
+    // Whether the rows are written as JSON instead of CSV
+    private boolean json;
+
+    // The folder where the tours are saved
+    private File tours;
+
+    // The seed of every solver
+    private long seed;
+
+    // The time spent on the Held-Karp bound of every run in ms, 0 to use the nearest neighbors
+    private long alphaTime;
+
+    // Whether the instances and the tours are kept off the heap
+    private boolean offHeap;
+
+    // Whether the time left once the tour is a local optimum is spent on kicks
+    private boolean iterated;
+
+    // The number of runs of every instance, the best tour being kept
+    private int runs;
+
+    // The maximum number of cities of a region, 0 to solve the instances whole
+    private int regionSize;
+
+    // Where the rows are written
+    private PrintWriter out;
+
+    // The number of runs that failed
+    private int failures;
+
+    // The highest heap usage sampled so far in bytes
+    private long peakHeap;
+
+    // The time between two samples of the heap usage in ms
+    private static final long HEAP_SAMPLE_INTERVAL = 10;
+
+    // The columns of a row, in order
+    private static final String[] COLUMNS = {
+        "instance", "cities", "length", "lower_bound", "time_ms", "passes", "moves", "finished", "peak_heap_bytes", "tour_file"
+    };
+
+    /**
+     * Constructor that takes the settings of the batch
+     * @param List<File> the instances to solve
+     * @param long the time limit of every run in ms, 0 for no limit
+     * @param int the number of instances solved at the same time
+     * @param boolean true to write JSON, false to write CSV
+     * @param File the folder where the tours are saved
+     * @param long the seed of every solver
+     * @param long the time spent on the Held-Karp bound in ms, 0 to use the nearest neighbors
+     * @param boolean true to keep the instances and the tours off the heap
+     * @param boolean true to spend the time limit on kicks once the tour is a local optimum
+     * @param int the number of runs of every instance, 1 for a single search from the default tour
+     * @param int the maximum number of cities of a region, 0 to solve the instances whole
+     * @param PrintWriter where the rows are written
+     */
+    public BatchRunner(List<File> files, long timeLimit, int threads, boolean json, File tours, long seed, long alphaTime,
+            boolean offHeap, boolean iterated, int runs, int regionSize, PrintWriter out) {
+        this.files = files;
+        this.timeLimit = timeLimit;
+        this.threads = threads;
+        this.json = json;
+        this.tours = tours;
+        this.seed = seed;
+        this.alphaTime = alphaTime;
+        this.offHeap = offHeap;
+        this.iterated = iterated;
+        this.runs = runs;
+        this.regionSize = regionSize;
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        List<File> files = new ArrayList<File>();
+        long timeLimit = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean json = false;
+        File output = null;
+        File tours = new File("tours");
+        long seed = 0;
+        long alphaTime = 0;
+        boolean offHeap = false;
+        boolean iterated = false;
+        int runs = 1;
+        int regionSize = 0;
+
+        for(int i = 0; i < args.length; ++i) {
+            String arg = args[i];
+            if(!arg.startsWith("--")) {
+                files.add(new File(arg));
+            } else if(arg.equals("--off-heap")) {
+                offHeap = true;
+            } else if(arg.equals("--iterated")) {
+                iterated = true;
+            } else if(i + 1 == args.length) {
+                usage("Missing value for " + arg);
+            } else if(arg.equals("--time-limit")) {
+                timeLimit = Long.parseLong(args[++i]);
+            } else if(arg.equals("--threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else if(arg.equals("--format")) {
+                String format = args[++i];
+                if(!format.equals("csv") && !format.equals("json")) {
+                    usage("Unknown format " + format);
+                }
+                json = format.equals("json");
+            } else if(arg.equals("--output")) {
+                output = new File(args[++i]);
+            } else if(arg.equals("--tours")) {
+                tours = new File(args[++i]);
+            } else if(arg.equals("--seed")) {
+                seed = Long.parseLong(args[++i]);
+            } else if(arg.equals("--runs")) {
+                runs = Integer.parseInt(args[++i]);
+            } else if(arg.equals("--partition")) {
+                regionSize = Integer.parseInt(args[++i]);
+            } else if(arg.equals("--alpha")) {
+                alphaTime = Long.parseLong(args[++i]);
+            } else {
+                usage("Unknown option " + arg);
+            }
+        }
+        if(files.isEmpty()) {
+            usage("No instance given");
+        }
+        if(iterated && timeLimit <= 0) {
+            usage("--iterated needs a --time-limit");
+        }
+        if(runs < 1) {
+            usage("--runs needs at least 1 run");
+        }
+        if(iterated && runs > 1) {
+            usage("--iterated and --runs can not be used together");
+        }
+        if(regionSize != 0 && (regionSize < 8 || iterated || runs > 1)) {
+            usage("--partition needs regions of at least 8 cities, without --iterated nor --runs");
+        }
+        if(offHeap && !ModuleLayer.boot().findModule("jdk.incubator.foreign").isPresent()) {
+            usage("--off-heap needs java --add-modules jdk.incubator.foreign");
+        }
+        if(!tours.isDirectory() && !tours.mkdirs()) {
+            throw new IOException("Could not create " + tours);
+        }
+
+        PrintWriter out = output == null? new PrintWriter(System.out): new PrintWriter(output, "UTF-8");
+        BatchRunner runner = new BatchRunner(files, timeLimit, Math.max(1, threads), json, tours, seed, alphaTime, offHeap, iterated, runs, regionSize, out);
+        runner.run();
+        if(output != null) {
+            out.close();
+        }
+        if(runner.getFailures() > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * This function prints how to use the runner and exits
+     * @param String what was wrong with the arguments
+     * @return void
+     */
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Usage: java BatchRunner [--time-limit ms] [--threads n] [--format csv|json]");
+        System.err.println("                        [--output file] [--tours folder] [--seed n]");
+        System.err.println("                        [--alpha ms] [--off-heap] [--iterated] [--runs n]");
+        System.err.println("                        [--partition n] file.tsp ...");
+        System.err.println("--alpha ms adds the alpha-nearest cities to the nearest ones, it helps on clustered");
+        System.err.println("instances and random tours (--runs), not from the greedy tour on small instances");
+        System.exit(2);
+    }
+
+    /**
+     * This function solves all the instances and waits for them to finish
+     * @param None
+     * @return void
+     */
+    public void run() throws InterruptedException {
+        if(!json) {
+            writeRow(COLUMNS);
+        }
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                sampleHeap();
+            }
+        }, 0, HEAP_SAMPLE_INTERVAL, TimeUnit.MILLISECONDS);
+
+        // The runs of a multi-start solve and the regions use the threads, so the instances are solved one at a time
+        ExecutorService pool = Executors.newFixedThreadPool(runs > 1 || regionSize > 0? 1: threads);
+        for(int i = 0; i < files.size(); ++i) {
+            final int index = i;
+            pool.execute(new Runnable() {
+                public void run() {
+                    solve(index);
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        sampler.shutdownNow();
+        out.flush();
+    }
+
+    /**
+     * This function solves a single instance, writes its row and saves its tour.
+     * A run that fails is reported on the standard error and does not stop the others
+     * @param int the position of the instance in the list
+     * @return void
+     */
+    private void solve(int index) {
+        File file = files.get(index);
+        try {
+            long start = System.currentTimeMillis();
+            Problem problem = offHeap && alphaTime == 0
+                ? SegmentProblem.map(file, LinKernighan.DEFAULT_CANDIDATES)
+                : InstanceCache.load(file, LinKernighan.DEFAULT_CANDIDATES);
+            String lowerBound = null;
+            if(alphaTime > 0) {
+                HeldKarp heldKarp = new HeldKarp(problem, HeldKarp.DEFAULT_POOL_SIZE);
+                heldKarp.optimize(Integer.MAX_VALUE, alphaTime);
+                lowerBound = String.format(Locale.ROOT, "%.4f", heldKarp.getLowerBound());
+                // The alpha ranking alone misses short edges the greedy tour relies on, so the nearest neighbors are kept
+                CandidateSet candidates = CandidateSet.union(heldKarp.alphaCandidates(LinKernighan.DEFAULT_CANDIDATES),
+                    problem.getCandidates(), LinKernighan.DEFAULT_CANDIDATES, problem.getXs(), problem.getYs(),
+                    problem.getDistanceFunction());
+                problem = new Problem(problem.getXs(), problem.getYs(), problem.getIds(), candidates, problem.getDistanceFunction());
+                if(offHeap) {
+                    problem = SegmentProblem.copyOf(problem);
+                }
+            }
+            int[] tour;
+            double length;
+            String passes = null;
+            String moves = null;
+            boolean finished;
+            if(runs > 1) {
+                MultiStartSolver solver = new MultiStartSolver(problem, runs, threads, seed);
+                solver.setTimeLimit(timeLeft(start));
+                List<RunStatistics> statistics = solver.solve();
+                tour = solver.getBestTour();
+                length = solver.getBestLength();
+                finished = statistics.size() == runs;
+                for(RunStatistics run: statistics) {
+                    finished &= run.isFinished();
+                }
+            } else if(regionSize > 0) {
+                PartitionSolver solver = new PartitionSolver(problem, regionSize, threads, seed);
+                solver.setTimeLimit(timeLeft(start));
+                solver.solve();
+                tour = solver.getTour();
+                length = solver.getLength();
+                passes = Integer.toString(solver.getSeamPasses());
+                // The regions and the seams are never run to a local optimum of the whole instance
+                finished = false;
+            } else {
+                LinKernighan lk = new LinKernighan(problem, LinKernighan.DEFAULT_INITIAL_TOUR, seed);
+                if(timeLimit > 0) {
+                    lk.setDeadline(start + timeLimit);
+                }
+                if(iterated) {
+                    lk.runIteratedAlgorithm(0, timeLeft(start));
+                } else {
+                    lk.runAlgorithm();
+                }
+                tour = lk.getTour();
+                length = lk.getLength();
+                passes = Integer.toString(lk.getPasses());
+                moves = Integer.toString(lk.getMoves());
+                finished = lk.isFinished();
+            }
+            long time = System.currentTimeMillis() - start;
+
+            String name = instanceName(file);
+            File tourFile = new File(tours, name + "-" + index + ".tour");
+            writeTour(tourFile, problem, tour, length);
+            sampleHeap();
+
+            writeRow(new String[] {
+                name,
+                Integer.toString(problem.size()),
+                String.format(Locale.ROOT, "%.4f", length),
+                lowerBound,
+                Long.toString(time),
+                passes,
+                moves,
+                Boolean.toString(finished),
+                Long.toString(getPeakHeap()),
+                tourFile.getPath()
+            });
+        } catch(Exception e) {
+            synchronized(this) {
+                failures++;
+            }
+            System.err.println("Failed to solve " + file + ": " + e);
+        }
+    }
+
+    /**
+     * This function returns the time left of a run
+     * @param long the time (in ms since the epoch) at which the run started
+     * @return long the time left in ms, at least 1, or 0 when there is no time limit
+     */
+    private long timeLeft(long start) {
+        if(timeLimit <= 0) {
+            return 0;
+        }
+        return Math.max(1, start + timeLimit - System.currentTimeMillis());
+    }
+
+    /**
+     * This function writes a row in the chosen format
+     * @param String[] the values, in the order of the columns (or the names of the columns), null when missing
+     * @return void
+     */
+    private synchronized void writeRow(String[] values) {
+        StringBuilder row = new StringBuilder();
+        if(json) {
+            row.append('{');
+            for(int i = 0; i < COLUMNS.length; ++i) {
+                if(i > 0) row.append(',');
+                row.append('"').append(COLUMNS[i]).append("\":");
+                if(values[i] == null) {
+                    row.append("null");
+                } else if(i == 0 || i == COLUMNS.length - 1) {
+                    row.append('"').append(escape(values[i])).append('"');
+                } else {
+                    row.append(values[i]);
+                }
+            }
+            row.append('}');
+        } else {
+            for(int i = 0; i < values.length; ++i) {
+                if(i > 0) row.append(',');
+                row.append(values[i] == null? "": quote(values[i]));
+            }
+        }
+        out.println(row);
+        out.flush();
+    }
+
+    /**
+     * This function escapes a string for a JSON string literal
+     * @param String the string
+     * @return String the escaped string
+     */
+    private static String escape(String value) {
+        StringBuilder res = new StringBuilder();
+        for(char c: value.toCharArray()) {
+            if(c == '"' || c == '\\') {
+                res.append('\\').append(c);
+            } else if(c < 0x20) {
+                res.append(String.format("\\u%04x", (int) c));
+            } else {
+                res.append(c);
+            }
+        }
+        return res.toString();
+    }
+
+    /**
+     * This function quotes a CSV field when it needs it
+     * @param String the field
+     * @return String the field as it is written
+     */
+    private static String quote(String value) {
+        if(value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * This function saves a tour in the TSPLIB tour format, using the ids of the cities
+     * @param File the file to write
+     * @param Problem the instance
+     * @param int[] the cities in the order they are visited
+     * @param double the length of the tour
+     * @return void
+     */
+    private static void writeTour(File file, Problem problem, int[] tour, double length) throws IOException {
+        int[] ids = problem.getIds();
+        PrintWriter writer = new PrintWriter(file, "UTF-8");
+        try {
+            writer.println("NAME : " + file.getName());
+            writer.println("COMMENT : Length " + String.format(Locale.ROOT, "%.4f", length));
+            writer.println("TYPE : TOUR");
+            writer.println("DIMENSION : " + tour.length);
+            writer.println("TOUR_SECTION");
+            for(int city: tour) {
+                writer.println(ids[city]);
+            }
+            writer.println("-1");
+            writer.println("EOF");
+        } finally {
+            writer.close();
+        }
+        if(writer.checkError()) {
+            throw new IOException("Could not write " + file);
+        }
+    }
+
+    /**
+     * This function returns the name of an instance, its file name without the extension
+     * @param File the instance
+     * @return String the name
+     */
+    private static String instanceName(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0? name.substring(0, dot): name;
+    }
+
+    /**
+     * This function samples the heap usage of the process and keeps the highest one.
+     * The peaks of the memory pools can not be added up, since each pool reaches its
+     * peak at a different time, so the usage of the whole heap is sampled instead
+     * @param None
+     * @return void
+     */
+    private synchronized void sampleHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        peakHeap = Math.max(peakHeap, memory.getHeapMemoryUsage().getUsed());
+    }
+
+    /**
+     * Getter that returns the peak heap usage of the process so far. The runs share
+     * the heap, so with several threads it is the peak of all the runs up to now
+     * @param None
+     * @return long the peak in bytes, as sampled every HEAP_SAMPLE_INTERVAL ms
+     */
+    public synchronized long getPeakHeap() {
+        return this.peakHeap;
+    }
+
+    /**
+     * Getter that returns the number of runs that failed
+     * @param None
+     * @return int the number of failures
+     */
+    public synchronized int getFailures() {
+        return this.failures;
+    }
+
+}
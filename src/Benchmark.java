@@ -0,0 +1,356 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * This class measures the hot paths of the algorithm from the command line,
+ * the results are printed to the standard output.
+ *
+ * Every benchmark is warmed up for a few passes so the JIT compiles it, then
+ * measured for a few timed passes. It reports the throughput (mean and
+ * deviation over the passes) and the bytes allocated per operation, taken
+ * from the allocation counter of the thread. All the solvers use a fixed seed
+ * so two runs measure the same work.
+ *
+ * The search is measured twice: with the cities in file order and renumbered
+ * along a Hilbert curve, as InstanceCache does, to show the effect of the
+ * memory layout (it16862 and sw24978 are the instances where it shows).
+ *
+ * Run it with --add-modules jdk.incubator.vector to measure the vector
+ * distance kernels next to the scalar ones (Checks verifies they agree).
+ *
+ * On the bigger instances the parallel improvement of a single tour
+ * (ParallelImprover) is timed from 1 to 32 threads on the same tour, next to
+ * runAlgorithm from that tour as the single-thread reference (Checks verifies
+ * the parallel tours).
+ *
+ * Usage: java Benchmark [file.tsp ...]
+ */
+public class Benchmark {
+
+    // The number of passes used to warm up the JIT before measuring
+    private static final int WARMUP_PASSES = 3;
+
+    // The number of passes measured
+    private static final int PASSES = 5;
+
+    // The minimum duration of a pass in ms
+    private static final long PASS_TIME = 500;
+
+    // The seed of every solver and random choice
+    private static final long SEED = 42;
+
+    // The smallest instance the parallel improvement is timed on
+    private static final int SCALING_CITIES = 4000;
+
+    // The instances measured when none is given
+    private static final String[] DEFAULT_INSTANCES = {
+        "data/qa194.tsp", "data/lu980.tsp", "data/nu3496.tsp", "data/fi10639.tsp"
+    };
+
+    // The results of the operations, kept so the JIT can not remove them
+    private static volatile Object sink;
+
+    /**
+     * This class is an operation to measure: setUp is called before every pass
+     * and is not measured, run is called as many times as the pass allows
+     */
+    private static abstract class Operation {
+        void setUp() {}
+        abstract Object run();
+    }
+
+    public static void main(String[] args) throws IOException {
+        String[] files = args.length > 0? args: DEFAULT_INSTANCES;
+        for(String name: files) {
+            benchmark(new File(name));
+        }
+    }
+
+    /**
+     * This function runs all the benchmarks on an instance
+     * @param File the .tsp file
+     * @return void
+     */
+    private static void benchmark(final File file) throws IOException {
+        TsplibParser parser = new TsplibParser(file);
+        final Problem problem = new Problem(parser.getXs(), parser.getYs(), parser.getIds(),
+            LinKernighan.DEFAULT_CANDIDATES, parser.getDistanceFunction());
+        final double[] xs = problem.getXs();
+        final double[] ys = problem.getYs();
+        final int size = problem.size();
+
+        double[] hilbertXs = parser.getXs().clone();
+        double[] hilbertYs = parser.getYs().clone();
+        int[] hilbertIds = parser.getIds().clone();
+        HilbertCurve.renumber(hilbertXs, hilbertYs, hilbertIds);
+        final Problem renumbered = new Problem(hilbertXs, hilbertYs, hilbertIds,
+            LinKernighan.DEFAULT_CANDIDATES, parser.getDistanceFunction());
+        System.out.println("Benchmarking " + file.getName() + " (" + size + " cities)");
+
+        measure("Interpreter", new Operation() {
+            Object run() {
+                return new Interpreter(file);
+            }
+        });
+        measure("TsplibParser", new Operation() {
+            Object run() {
+                try {
+                    return new TsplibParser(file);
+                } catch(IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        // A sidecar of its own: the one next to the file holds the cities renumbered along the curve
+        final File sidecar = File.createTempFile(file.getName(), InstanceCache.EXTENSION);
+        sidecar.deleteOnExit();
+        InstanceCache.write(sidecar, file, problem, true);
+        measure("InstanceCache", new Operation() {
+            Object run() {
+                try {
+                    return InstanceCache.read(sidecar, file, LinKernighan.DEFAULT_CANDIDATES);
+                } catch(IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        if(size <= Problem.TABLE_LIMIT) {
+            measure("DistanceTable", new Operation() {
+                Object run() {
+                    return new DistanceTable(xs, ys, problem.getDistanceFunction());
+                }
+            });
+        }
+        measure("distances scalar", distances(problem, DistanceKernel.scalar()));
+        measure("nearest scalar", nearest(problem, DistanceKernel.scalar()));
+        if(DistanceKernel.get() != DistanceKernel.scalar()) {
+            measure("distances vector", distances(problem, DistanceKernel.get()));
+            measure("nearest vector", nearest(problem, DistanceKernel.get()));
+        }
+        measure("CandidateSet", new Operation() {
+            Object run() {
+                return new CandidateSet(xs, ys, LinKernighan.DEFAULT_CANDIDATES);
+            }
+        });
+        measure("greedy tour", new Operation() {
+            Object run() {
+                return TourConstruction.greedy(xs, ys, problem.getCandidates(), problem.createDistanceProvider());
+            }
+        });
+
+        // One call to improve(t1) on a tour that still has moves to find
+        measure("improve(t1)", improve(problem));
+        measure("improve(t1) hilbert", improve(renumbered));
+
+        // The reference implementation of a 2-opt move, on random pairs of edges
+        measure("constructNewTour", new Operation() {
+            LinKernighan lk;
+            int[] order;
+            Random random;
+            void setUp() {
+                lk = new LinKernighan(problem, InitialTour.GREEDY, SEED);
+                order = lk.getTour();
+                random = new Random(SEED);
+            }
+            Object run() {
+                int i = random.nextInt(size - 3);
+                int j = i + 2 + random.nextInt(size - i - 3);
+                ArrayList<Integer> changes = new ArrayList<Integer>();
+                changes.add(order[i]);
+                changes.add(order[i + 1]);
+                changes.add(order[j + 1]);
+                changes.add(order[j]);
+                return lk.constructNewTour(order, changes);
+            }
+        });
+
+        // A whole solve, from building the greedy tour to the local optimum
+        measure("runAlgorithm", new Operation() {
+            Object run() {
+                LinKernighan lk = new LinKernighan(problem, InitialTour.GREEDY, SEED);
+                lk.runAlgorithm();
+                return lk;
+            }
+        });
+
+        // The same solve with the cities renumbered along the curve
+        measure("runAlgorithm hilbert", new Operation() {
+            Object run() {
+                LinKernighan lk = new LinKernighan(renumbered, InitialTour.GREEDY, SEED);
+                lk.runAlgorithm();
+                return lk;
+            }
+        });
+
+        // The same solve without the counters and the Flight Recorder events, to see their cost
+        measure("runAlgorithm quiet", new Operation() {
+            Object run() {
+                LinKernighan lk = new LinKernighan(problem, InitialTour.GREEDY, SEED);
+                lk.setCounting(false);
+                lk.runAlgorithm();
+                return lk;
+            }
+        });
+
+        if(size >= SCALING_CITIES) {
+            scaling(problem);
+        }
+        System.out.println();
+    }
+
+    /**
+     * This function returns the operation that computes the distances from a city to all the others
+     * @param Problem the instance
+     * @param DistanceKernel the kernel that computes them
+     * @return Operation the operation
+     */
+    private static Operation distances(final Problem problem, final DistanceKernel kernel) {
+        final double[] xs = problem.getXs();
+        final double[] ys = problem.getYs();
+        return new Operation() {
+            double[] row = new double[problem.size()];
+            int city;
+            Object run() {
+                kernel.distances(problem.getDistanceFunction(), xs[city], ys[city], xs, ys, 0, problem.size(), row);
+                if(++city == problem.size()) city = 0;
+                return row;
+            }
+        };
+    }
+
+    /**
+     * This function returns the operation that searches the 10 nearest cities of a city among all of them
+     * @param Problem the instance
+     * @param DistanceKernel the kernel that searches them
+     * @return Operation the operation
+     */
+    private static Operation nearest(final Problem problem, final DistanceKernel kernel) {
+        final double[] xs = problem.getXs();
+        final double[] ys = problem.getYs();
+        return new Operation() {
+            int[] result = new int[LinKernighan.DEFAULT_CANDIDATES];
+            double[] distances = new double[LinKernighan.DEFAULT_CANDIDATES];
+            int city;
+            Object run() {
+                kernel.nearest(xs[city], ys[city], xs, ys, 0, problem.size(), result.length, result, distances);
+                if(++city == problem.size()) city = 0;
+                return result;
+            }
+        };
+    }
+
+    /**
+     * This function returns the operation that calls improve(t1) on every city in turn,
+     * starting from a random tour
+     * @param Problem the instance
+     * @return Operation the operation
+     */
+    private static Operation improve(final Problem problem) {
+        return new Operation() {
+            LinKernighan lk;
+            int city;
+            void setUp() {
+                lk = new LinKernighan(problem, InitialTour.RANDOM, SEED);
+                city = 0;
+            }
+            Object run() {
+                lk.improve(city);
+                if(++city == problem.size()) city = 0;
+                return lk;
+            }
+        };
+    }
+
+    /**
+     * This function times the parallel improvement of the same tour from 1 to 32 threads,
+     * after runAlgorithm from that tour
+     * @param Problem the instance
+     * @return void
+     */
+    private static void scaling(Problem problem) {
+        int[] start = new LinKernighan(problem, InitialTour.SPACE_FILLING_CURVE, SEED).getTour();
+        new ParallelImprover(problem, start, 1, SEED).improve(); // Warm up
+        System.out.println("  Parallel improvement on " + Runtime.getRuntime().availableProcessors() + " processors:");
+        long reference = System.nanoTime();
+        LinKernighan lk = new LinKernighan(problem, start, null, SEED);
+        lk.setCounting(false);
+        lk.runAlgorithm();
+        System.out.printf("  %-20s %14.2f ms %14.1f length%n", "runAlgorithm", (System.nanoTime() - reference) / 1e6, lk.getLength());
+        for(int threads = 1; threads <= 32; threads *= 2) {
+            long begin = System.nanoTime();
+            ParallelImprover improver = new ParallelImprover(problem, start, threads, SEED);
+            improver.improve();
+            double ms = (System.nanoTime() - begin) / 1e6;
+            System.out.printf("  %-20s %14.2f ms %14.1f length %8d conflicts%n",
+                "parallel " + threads + " threads", ms, improver.getLength(), improver.getConflicts());
+        }
+    }
+
+    /**
+     * This function warms up and measures an operation, then prints its throughput and allocations
+     * @param String the name of the operation
+     * @param Operation the operation
+     * @return void
+     */
+    private static void measure(String name, Operation operation) {
+        for(int pass = 0; pass < WARMUP_PASSES; ++pass) {
+            pass(operation);
+        }
+
+        double[] throughputs = new double[PASSES];
+        long operations = 0;
+        long bytes = 0;
+        for(int pass = 0; pass < PASSES; ++pass) {
+            long[] result = pass(operation);
+            throughputs[pass] = result[0] * 1e9 / result[1];
+            operations += result[0];
+            bytes += result[2];
+        }
+
+        double mean = 0;
+        for(double t: throughputs) mean += t;
+        mean /= PASSES;
+        double variance = 0;
+        for(double t: throughputs) variance += (t - mean) * (t - mean);
+        double deviation = Math.sqrt(variance / (PASSES - 1));
+
+        System.out.printf("  %-20s %14.2f ops/s (+- %.2f) %14.1f bytes/op%n",
+            name, mean, deviation, (double) bytes / operations);
+    }
+
+    /**
+     * This function runs an operation for at least PASS_TIME
+     * @param Operation the operation
+     * @return long[] the number of operations, the time in ns and the bytes allocated
+     */
+    private static long[] pass(Operation operation) {
+        operation.setUp();
+        long operations = 0;
+        long before = allocatedBytes();
+        long start = System.nanoTime();
+        long end = start + PASS_TIME * 1000000;
+        long now;
+        do {
+            sink = operation.run();
+            operations++;
+            now = System.nanoTime();
+        } while(now < end);
+        long bytes = allocatedBytes() - before;
+        return new long[] {operations, now - start, bytes};
+    }
+
+    /**
+     * This function returns the number of bytes allocated so far by the current thread
+     * @param None
+     * @return long the allocated bytes
+     */
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+}
@@ -0,0 +1,197 @@
+/**
+ * This class stores the candidate neighbors of every city, the only ones
+ * the algorithm looks at when it searches for a new y edge.
+ * The candidates of a city are sorted from the nearest to the farthest, by
+ * the distance function of the instance: the search stops looking at the
+ * candidates of a city at the first one too far for the gain criterion.
+ * The solvers only use size, get and getK, which a subclass can override to
+ * keep the lists somewhere else (see SegmentCandidates).
+ */
+public class CandidateSet {
+    /*
+     * Instance variables
+     */
+
+    // The maximum number of candidates per city
+    private int k;
+
+    // The candidates of all the cities, k consecutive slots per city
+    private int[] neighbors;
+
+    // The number of candidates of each city
+    private int[] counts;
+
+    /**
+     * Constructor that builds the k nearest neighbors of every city using a k-d tree
+     * @param double[] the x coordinates of the cities
+     * @param double[] the y coordinates of the cities
+     * @param int the number of candidates per city
+     */
+    public CandidateSet(double[] xs, double[] ys, int k) {
+        this(xs, ys, k, DistanceFunction.EUCLIDEAN);
+    }
+
+    /**
+     * Constructor that builds the k nearest neighbors of every city using a k-d tree,
+     * sorted by a distance function. The k-d tree finds the nearest cities in the
+     * plane; the functions derived from the euclidean distance keep that order, but
+     * GEO does not (the coordinates are angles), so its lists are sorted again
+     * @param double[] the x coordinates of the cities
+     * @param double[] the y coordinates of the cities
+     * @param int the number of candidates per city
+     * @param DistanceFunction how the distances are computed
+     */
+    public CandidateSet(double[] xs, double[] ys, int k, DistanceFunction function) {
+        int size = xs.length;
+        this.k = Math.max(0, Math.min(k, size - 1));
+        this.neighbors = new int[size * this.k];
+        this.counts = new int[size];
+
+        KdTree tree = new KdTree(xs, ys);
+        int[] nearest = new int[this.k];
+        for(int city = 0; city < size; ++city) {
+            int found = tree.nearest(city, this.k, nearest);
+            System.arraycopy(nearest, 0, this.neighbors, city * this.k, found);
+            this.counts[city] = found;
+            if(function == DistanceFunction.GEO) {
+                sort(city, xs, ys, function);
+            }
+        }
+    }
+
+    /**
+     * Constructor that takes lists that have already been built, for instance read from a cache
+     * @param int the maximum number of candidates per city
+     * @param int[] the candidates of all the cities, k consecutive slots per city
+     * @param int[] the number of candidates of each city
+     */
+    public CandidateSet(int k, int[] neighbors, int[] counts) {
+        if(neighbors.length != counts.length * k) {
+            throw new IllegalArgumentException("Expected " + counts.length * k + " candidates, got " + neighbors.length);
+        }
+        this.k = k;
+        this.neighbors = neighbors;
+        this.counts = counts;
+    }
+
+    /**
+     * Constructor for the subclasses that keep the lists elsewhere, they override the getters
+     * @param int the maximum number of candidates per city
+     */
+    protected CandidateSet(int k) {
+        this.k = k;
+    }
+
+    /**
+     * This function merges two candidate lists of every city, for instance the
+     * alpha-nearest and the nearest neighbors: a city keeps the first k candidates
+     * of each list, once, sorted by distance as the move search expects
+     * @param CandidateSet the first lists
+     * @param CandidateSet the second lists
+     * @param int the number of candidates taken from each list
+     * @param double[] the x coordinates of the cities
+     * @param double[] the y coordinates of the cities
+     * @param DistanceFunction how the distances are computed
+     * @return CandidateSet the merged lists, of at most 2 * k candidates per city
+     */
+    public static CandidateSet union(CandidateSet first, CandidateSet second, int k, double[] xs, double[] ys,
+            DistanceFunction function) {
+        int size = xs.length;
+        int merged = 2 * k;
+        int[] neighbors = new int[size * merged];
+        int[] counts = new int[size];
+        for(int city = 0; city < size; ++city) {
+            int from = city * merged;
+            int count = 0;
+            for(CandidateSet set: new CandidateSet[] {first, second}) {
+                int n = Math.min(k, set.size(city));
+                for(int i = 0; i < n; ++i) {
+                    int candidate = set.get(city, i);
+                    boolean seen = false;
+                    for(int j = from; j < from + count && !seen; ++j) {
+                        seen = neighbors[j] == candidate;
+                    }
+                    if(!seen) {
+                        neighbors[from + count++] = candidate;
+                    }
+                }
+            }
+            counts[city] = count;
+        }
+        CandidateSet union = new CandidateSet(merged, neighbors, counts);
+        for(int city = 0; city < size; ++city) {
+            union.sort(city, xs, ys, function);
+        }
+        return union;
+    }
+
+    /**
+     * This function sorts the candidates of a city by a distance function (insertion
+     * sort, the lists are short and nearly sorted already)
+     * @param int the city
+     * @param double[] the x coordinates of the cities
+     * @param double[] the y coordinates of the cities
+     * @param DistanceFunction how the distances are computed
+     * @return void
+     */
+    private void sort(int city, double[] xs, double[] ys, DistanceFunction function) {
+        int from = city * k;
+        for(int i = from + 1; i < from + counts[city]; ++i) {
+            int candidate = neighbors[i];
+            double d = function.distance(xs[city], ys[city], xs[candidate], ys[candidate]);
+            int j = i;
+            while(j > from && function.distance(xs[city], ys[city], xs[neighbors[j - 1]], ys[neighbors[j - 1]]) > d) {
+                neighbors[j] = neighbors[j - 1];
+                j--;
+            }
+            neighbors[j] = candidate;
+        }
+    }
+
+    /**
+     * Getter that returns the number of candidates of a city
+     * @param int the city
+     * @return int the number of candidates
+     */
+    public int size(int city) {
+        return this.counts[city];
+    }
+
+    /**
+     * Getter that returns one of the candidates of a city
+     * @param int the city
+     * @param int the rank of the candidate (0 is the nearest)
+     * @return int the candidate city
+     */
+    public int get(int city, int i) {
+        return this.neighbors[city * this.k + i];
+    }
+
+    /**
+     * Getter that returns the maximum number of candidates per city
+     * @param None
+     * @return int the number of candidates
+     */
+    public int getK() {
+        return this.k;
+    }
+
+    /**
+     * Getter that returns the candidates of all the cities
+     * @param None
+     * @return int[] k consecutive slots per city (not to be modified)
+     */
+    public int[] getNeighbors() {
+        return this.neighbors;
+    }
+
+    /**
+     * Getter that returns the number of candidates of every city
+     * @param None
+     * @return int[] the counts (not to be modified)
+     */
+    public int[] getCounts() {
+        return this.counts;
+    }
+
+}
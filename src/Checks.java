@@ -0,0 +1,402 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class runs the self-checks of the solver from the command line. There
+ * is no test framework in this project, so every check throws an
+ * IllegalStateException when it fails, and main exits with the status 1
+ * after printing the failure.
+ *
+ * Run it with --add-modules jdk.incubator.vector to check the vector distance
+ * kernel against the scalar one, without it only the scalar one is used.
+ *
+ * Usage: java Checks [file.tsp ...]
+ */
+public class Checks {
+
+    // The seed of every solver and random choice
+    private static final long SEED = 42;
+
+    // The instances checked when none is given
+    private static final String[] DEFAULT_INSTANCES = {
+        "data/qa194.tsp", "data/lu980.tsp", "data/rw1621.tsp"
+    };
+
+    // A move has to gain more than this to count as improving
+    private static final double EPSILON = 1e-7;
+
+    // Up to this number of cities the searches run in debug mode, every move being cross-checked
+    private static final int DEBUG_LIMIT = 2000;
+
+    // The number of kicks of the iterated search, and how many are run between two checks
+    private static final int ITERATED_KICKS = 300;
+    private static final int KICKS_PER_CHECK = 50;
+
+    // The number of runs of the multi-start solves, and their time limit in ms when it is checked
+    private static final int MULTI_START_RUNS = 4;
+    private static final long MULTI_START_LIMIT = 100;
+
+    // How late a solve may stop after its deadline, in ms
+    private static final long DEADLINE_SLACK = 100;
+
+    // The number of cities of the random GEO instance
+    private static final int GEO_CITIES = 1000;
+
+    // The numbers of threads the parallel improver is checked with
+    private static final int[] THREADS = {1, 2, 8, 32};
+
+    // How much longer than the local optimum of runAlgorithm the parallel tour may be, from a greedy tour:
+    // runAlgorithm itself ends up to 3% away when only the order of its queue changes
+    private static final double PARALLEL_TOLERANCE = 0.04;
+
+    // The smallest instance the partition is checked on, a mid-size one
+    private static final int PARTITION_CITIES = 900;
+
+    // The number of regions the partition is checked with, the bound on a region following from it
+    private static final int PARTITION_REGIONS = 6;
+
+    public static void main(String[] args) throws IOException {
+        String[] files = args.length > 0? args: DEFAULT_INSTANCES;
+        try {
+            for(String name: files) {
+                File file = new File(name);
+                Problem problem = InstanceCache.load(file, LinKernighan.DEFAULT_CANDIDATES);
+                System.out.println("Checking " + file.getName() + " (" + problem.size() + " cities)");
+                check(problem);
+            }
+            System.out.println("Checking a random GEO instance (" + GEO_CITIES + " cities)");
+            check(randomGeo(GEO_CITIES));
+        } catch(IllegalStateException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+        System.out.println("All the checks have passed");
+    }
+
+    /**
+     * This function runs all the checks on an instance
+     * @param Problem the instance
+     * @return void
+     * @throws IllegalStateException if a check fails
+     */
+    private static void check(Problem problem) {
+        checkKernel(problem);
+        System.out.println("  the " + DistanceKernel.get().getName() + " distance kernel matches the scalar one");
+        checkCandidateOrder(problem);
+        for(InitialTour initial: new InitialTour[] {InitialTour.RANDOM, InitialTour.GREEDY}) {
+            LinKernighan lk = new LinKernighan(problem, initial, SEED);
+            lk.setDebug(problem.size() <= DEBUG_LIMIT);
+            lk.runAlgorithm();
+            lk.checkTour();
+            checkLength(problem, lk.getTour(), lk.getLength(), "The search from a " + initial + " tour");
+            if(!lk.isFinished()) {
+                throw new IllegalStateException("The search from a " + initial + " tour has stopped before a local optimum");
+            }
+            checkTwoOpt(problem, lk.getTour());
+            System.out.printf("  %-20s %14.1f length%n", "local optimum " + initial, lk.getLength());
+        }
+        checkIterated(problem);
+        checkMultiStart(problem);
+        checkParallel(problem);
+        if(problem.size() >= PARTITION_CITIES) {
+            checkPartition(problem);
+        }
+    }
+
+    /**
+     * This function runs the iterated search from the local optimum of a greedy tour, in debug
+     * mode on small instances so the kicks and their undo are cross-checked too. Every
+     * KICKS_PER_CHECK kicks the tour must have its tracked length and be no longer than before
+     * @param Problem the instance
+     * @return void
+     * @throws IllegalStateException if a tour is wrong or longer than the local optimum
+     */
+    private static void checkIterated(Problem problem) {
+        LinKernighan lk = new LinKernighan(problem, InitialTour.GREEDY, SEED);
+        lk.setDebug(problem.size() <= DEBUG_LIMIT);
+        lk.runAlgorithm();
+        double localOptimum = lk.getLength();
+        double previous = localOptimum;
+        for(int kicks = KICKS_PER_CHECK; kicks <= ITERATED_KICKS; kicks += KICKS_PER_CHECK) {
+            lk.runIteratedAlgorithm(kicks, 0);
+            lk.checkTour();
+            double length = checkLength(problem, lk.getTour(), lk.getLength(), "The iterated search after " + kicks + " kicks");
+            if(length > previous + EPSILON) {
+                throw new IllegalStateException("The iterated search has gone from " + previous + " to " + length
+                    + " after " + kicks + " kicks");
+            }
+            previous = length;
+        }
+        System.out.printf("  %-20s %14.1f length %8d kicks %8d accepted (from %.1f)%n", "iterated",
+            lk.getLength(), lk.getKicks(), lk.getAcceptedKicks(), localOptimum);
+    }
+
+    /**
+     * This function runs MultiStartSolver twice: without a limit, where the best tour must be
+     * a permutation of the length reported, the shortest of the runs, and with a time limit
+     * that the solve has to respect
+     * @param Problem the instance
+     * @return void
+     * @throws IllegalStateException if the best tour is wrong or the solve overruns its limit
+     */
+    private static void checkMultiStart(Problem problem) {
+        MultiStartSolver solver = new MultiStartSolver(problem, MULTI_START_RUNS, 2, SEED);
+        List<RunStatistics> statistics = solver.solve();
+        if(statistics.size() != MULTI_START_RUNS) {
+            throw new IllegalStateException("Only " + statistics.size() + " of the " + MULTI_START_RUNS + " runs have been done");
+        }
+        double shortest = Double.MAX_VALUE;
+        for(RunStatistics run: statistics) {
+            shortest = Math.min(shortest, run.getLength());
+        }
+        double length = checkLength(problem, solver.getBestTour(), solver.getBestLength(), "The best multi-start tour");
+        if(length != shortest) {
+            throw new IllegalStateException("The best multi-start tour is " + length + " long but the shortest run is " + shortest);
+        }
+
+        MultiStartSolver limited = new MultiStartSolver(problem, 4 * MULTI_START_RUNS, 1, SEED);
+        long start = System.currentTimeMillis();
+        limited.setTimeLimit(MULTI_START_LIMIT);
+        List<RunStatistics> limitedRuns = limited.solve();
+        long time = System.currentTimeMillis() - start;
+        if(time > MULTI_START_LIMIT + DEADLINE_SLACK) {
+            throw new IllegalStateException("The multi-start solve has taken " + time + " ms for a limit of " + MULTI_START_LIMIT + " ms");
+        }
+        checkLength(problem, limited.getBestTour(), limited.getBestLength(), "The best multi-start tour with a time limit");
+        System.out.printf("  %-20s %14.1f length %8d runs (%d in %d ms with a limit of %d ms)%n", "multi-start",
+            length, statistics.size(), limitedRuns.size(), time, MULTI_START_LIMIT);
+    }
+
+    /**
+     * This function solves a mid-size instance with PartitionSolver and a bound small enough
+     * to force several regions: the stitched tour and the final one must visit every city
+     * once and have the lengths reported, and the pass along the boundaries must not
+     * lengthen the stitched tour
+     * @param Problem the instance
+     * @return void
+     * @throws IllegalStateException if a tour is wrong or the pass has lengthened it
+     */
+    private static void checkPartition(Problem problem) {
+        int regionSize = Math.max(8, problem.size() / PARTITION_REGIONS);
+        PartitionSolver solver = new PartitionSolver(problem, regionSize, 2, SEED);
+        solver.solve();
+        if(solver.getRegionCount() < 2) {
+            throw new IllegalStateException("The partition in regions of " + regionSize + " cities has " + solver.getRegionCount() + " region");
+        }
+        double stitched = checkLength(problem, solver.getStitchedTour(), solver.getStitchedLength(), "The stitched tour");
+        double length = checkLength(problem, solver.getTour(), solver.getLength(), "The partitioned tour");
+        if(length > stitched + EPSILON) {
+            throw new IllegalStateException("The pass along the boundaries has lengthened the stitched tour from " + stitched + " to " + length);
+        }
+        System.out.printf("  %-20s %14.1f length %8d regions (%.1f stitched, %d boundary cities)%n", "partition",
+            length, solver.getRegionCount(), stitched, solver.getBoundaryCities());
+    }
+
+    /**
+     * This function checks that a tour visits every city once and has the length its solver has tracked
+     * @param Problem the instance
+     * @param int[] the cities in the order they are visited
+     * @param double the length tracked by the solver
+     * @param String what made the tour, for the message
+     * @return double the length of the tour
+     * @throws IllegalStateException if the tour is not a permutation or its length is not the tracked one
+     */
+    private static double checkLength(Problem problem, int[] tour, double tracked, String what) {
+        DistanceProvider distances = problem.createDistanceProvider();
+        boolean[] visited = new boolean[problem.size()];
+        if(tour.length != visited.length) {
+            throw new IllegalStateException(what + " has " + tour.length + " cities");
+        }
+        double length = 0;
+        for(int i = 0; i < tour.length; ++i) {
+            if(tour[i] < 0 || tour[i] >= visited.length || visited[tour[i]]) {
+                throw new IllegalStateException(what + " visits " + tour[i] + " twice or does not exist");
+            }
+            visited[tour[i]] = true;
+            length += distances.get(tour[i], tour[(i + 1) % tour.length]);
+        }
+        if(Math.abs(length - tracked) > 1e-6 * Math.max(1, length)) {
+            throw new IllegalStateException(what + " is " + length + " long but its solver has tracked " + tracked);
+        }
+        return length;
+    }
+
+    /**
+     * This function improves a random and a greedy tour with ParallelImprover and several
+     * numbers of threads, every commit being checked. The final tour must visit every city
+     * once, have the length the improver has tracked and be no longer than the start. It is
+     * compared with the local optimum of runAlgorithm from the same tour: one thread must
+     * find the same one and, from the greedy tour, several ones a tour at most
+     * PARALLEL_TOLERANCE longer
+     * @param Problem the instance
+     * @return void
+     * @throws IllegalStateException if a tour is wrong or too long
+     */
+    private static void checkParallel(Problem problem) {
+        for(InitialTour initial: new InitialTour[] {InitialTour.RANDOM, InitialTour.GREEDY}) {
+            LinKernighan reference = new LinKernighan(problem, initial, SEED);
+            int[] start = reference.getTour();
+            double startLength = reference.getLength();
+            reference.runAlgorithm();
+            double optimum = reference.getLength();
+            for(int threads: THREADS) {
+                ParallelImprover improver = new ParallelImprover(problem, start, threads, SEED);
+                improver.setDebug(problem.size() <= DEBUG_LIMIT);
+                improver.improve();
+
+                String what = "The tour of " + threads + " threads from a " + initial + " tour";
+                double length = checkLength(problem, improver.getTour(), improver.getLength(), what);
+                if(length > startLength + EPSILON) {
+                    throw new IllegalStateException(what + " is " + length + " long, longer than its start " + startLength);
+                }
+                if(threads == 1 && Math.abs(length - optimum) > EPSILON) {
+                    throw new IllegalStateException(what + " is " + length + " long but runAlgorithm gives " + optimum);
+                }
+                if(initial == InitialTour.GREEDY && length > optimum * (1 + PARALLEL_TOLERANCE)) {
+                    throw new IllegalStateException(what + " is " + length + " long, too far from the " + optimum + " of runAlgorithm");
+                }
+                System.out.printf("  %-20s %14.1f length %8d commits %8d conflicts (runAlgorithm %.1f)%n",
+                    "parallel " + initial + " " + threads, length, improver.getCommits(), improver.getConflicts(), optimum);
+            }
+        }
+    }
+
+    /**
+     * This function checks that the kernel in use gives the same results as the scalar one
+     * on an instance: the distances from every city to all the others (from a sample of
+     * the cities on big instances), the nearest neighbors and the minima
+     * @param Problem the instance
+     * @return void
+     * @throws IllegalStateException if a result differs
+     */
+    private static void checkKernel(Problem problem) {
+        DistanceKernel scalar = DistanceKernel.scalar();
+        DistanceKernel kernel = DistanceKernel.get();
+        DistanceFunction function = problem.getDistanceFunction();
+        double[] xs = problem.getXs();
+        double[] ys = problem.getYs();
+        int size = xs.length;
+        int step = Math.max(1, size / 200);
+        double[] expected = new double[size];
+        double[] actual = new double[size];
+        int k = Math.min(8, size);
+        int[] expectedNearest = new int[k];
+        int[] actualNearest = new int[k];
+        double[] nearestDistances = new double[k];
+
+        for(int c = 0; c < size; c += step) {
+            // A block that does not start at 0 nor end on a multiple of the lanes
+            int from = c % 3;
+            scalar.distances(function, xs[c], ys[c], xs, ys, from, size, expected);
+            kernel.distances(function, xs[c], ys[c], xs, ys, from, size, actual);
+            for(int i = from; i < size; ++i) {
+                if(Double.doubleToLongBits(expected[i]) != Double.doubleToLongBits(actual[i])) {
+                    throw new IllegalStateException("The " + kernel.getName() + " distance from " + c + " to " + i
+                        + " is " + actual[i] + " instead of " + expected[i]);
+                }
+            }
+
+            scalar.squaredDistances(xs[c], ys[c], xs, ys, from, size, expected);
+            kernel.squaredDistances(xs[c], ys[c], xs, ys, from, size, actual);
+            for(int i = from; i < size; ++i) {
+                if(Double.doubleToLongBits(expected[i]) != Double.doubleToLongBits(actual[i])) {
+                    throw new IllegalStateException("The " + kernel.getName() + " squared distance from " + c
+                        + " to " + i + " is " + actual[i] + " instead of " + expected[i]);
+                }
+            }
+            if(scalar.argmin(expected, from, size) != kernel.argmin(expected, from, size)) {
+                throw new IllegalStateException("The " + kernel.getName() + " minimum from " + c + " differs");
+            }
+
+            int expectedCount = scalar.nearest(xs[c], ys[c], xs, ys, from, size, k, expectedNearest, nearestDistances);
+            int actualCount = kernel.nearest(xs[c], ys[c], xs, ys, from, size, k, actualNearest, nearestDistances);
+            for(int i = 0; i < expectedCount; ++i) {
+                if(expectedCount != actualCount || expectedNearest[i] != actualNearest[i]) {
+                    throw new IllegalStateException("The " + kernel.getName() + " nearest cities of " + c + " differ");
+                }
+            }
+        }
+        if(kernel.nearest(xs[0], ys[0], xs, ys, 0, size, 0, actualNearest, nearestDistances) != 0) {
+            throw new IllegalStateException("The " + kernel.getName() + " kernel has found cities when none is wanted");
+        }
+    }
+
+    /**
+     * This function builds an instance of cities spread over the whole earth, where the
+     * nearest cities in the plane of the coordinates are often not the nearest ones
+     * @param int the number of cities
+     * @return Problem the instance, with GEO distances
+     */
+    private static Problem randomGeo(int size) {
+        Random random = new Random(SEED);
+        double[] latitudes = new double[size];
+        double[] longitudes = new double[size];
+        int[] ids = new int[size];
+        for(int i = 0; i < size; ++i) {
+            // DDD.MM: whole degrees, then the minutes as hundredths
+            latitudes[i] = random.nextInt(160) - 80 + random.nextInt(60) / 100.0;
+            longitudes[i] = random.nextInt(360) - 180 + random.nextInt(60) / 100.0;
+            ids[i] = i + 1;
+        }
+        return new Problem(latitudes, longitudes, ids, LinKernighan.DEFAULT_CANDIDATES, DistanceFunction.GEO);
+    }
+
+    /**
+     * This function checks that the candidates of every city are sorted by the distance
+     * of the instance, since the search stops at the first candidate that is too far
+     * @param Problem the instance
+     * @return void
+     * @throws IllegalStateException if a list is not sorted
+     */
+    private static void checkCandidateOrder(Problem problem) {
+        DistanceProvider distances = problem.createDistanceProvider();
+        CandidateSet candidates = problem.getCandidates();
+        for(int city = 0; city < problem.size(); ++city) {
+            for(int i = 1; i < candidates.size(city); ++i) {
+                if(distances.get(city, candidates.get(city, i)) < distances.get(city, candidates.get(city, i - 1))) {
+                    throw new IllegalStateException("The candidates of " + city + " are not sorted by distance at rank " + i);
+                }
+            }
+        }
+    }
+
+    /**
+     * This function checks that a tour has no improving 2-opt move that the search can
+     * reach: a move that replaces a tour edge (a, b) by an edge (a, c) to a candidate of a
+     * shorter than (a, b), as the gain criterion requires, and the edge (c, d) after c in the
+     * same direction by (b, d)
+     * @param Problem the instance
+     * @param int[] the cities in the order they are visited
+     * @return void
+     * @throws IllegalStateException if there is such a move
+     */
+    private static void checkTwoOpt(Problem problem, int[] tour) {
+        int size = tour.length;
+        int[] position = new int[size];
+        for(int i = 0; i < size; ++i) {
+            position[tour[i]] = i;
+        }
+        DistanceProvider distances = problem.createDistanceProvider();
+        CandidateSet candidates = problem.getCandidates();
+        for(int a = 0; a < size; ++a) {
+            for(int step = -1; step <= 1; step += 2) {
+                int b = tour[(position[a] + step + size) % size];
+                for(int i = 0; i < candidates.size(a); ++i) {
+                    int c = candidates.get(a, i);
+                    int d = tour[(position[c] + step + size) % size];
+                    if(c == b || d == a || distances.get(a, c) >= distances.get(a, b)) {
+                        continue;
+                    }
+                    double gain = distances.get(a, b) + distances.get(c, d) - distances.get(a, c) - distances.get(b, d);
+                    if(gain > EPSILON) {
+                        throw new IllegalStateException("Replacing (" + a + ", " + b + ") and (" + c + ", " + d
+                            + ") by (" + a + ", " + c + ") and (" + b + ", " + d + ") still gains " + gain);
+                    }
+                }
+            }
+        }
+    }
+
+}
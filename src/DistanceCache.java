@@ -0,0 +1,110 @@
+import java.util.Arrays;
+
+/**
+ * This class computes the distances on demand from the coordinates of the
+ * cities and keeps the most recently used pairs in a bounded cache.
+ *
+ * The cache is direct mapped: every pair of cities hashes to a single slot,
+ * and a new pair simply evicts whatever was stored there. The pairs the
+ * algorithm keeps asking for (tour neighbors and candidate edges) stay hot,
+ * while the memory grows linearly with the number of cities.
+ */
+public class DistanceCache implements DistanceProvider {
+    /*
+     * Instance variables
+     */
+
+    // The number of cache slots per city
+    public static final int SLOTS_PER_CITY = 8;
+
+    // The x coordinates of the cities
+    private double[] xs;
+
+    // The y coordinates of the cities
+    private double[] ys;
+
+    // How the distances are computed
+    private DistanceFunction function;
+
+    // The pair stored in each slot, encoded as (min << 32 | max), -1 when empty
+    private long[] keys;
+
+    // The distance stored in each slot, null when the distances are integers
+    private double[] values;
+
+    // The distance stored in each slot for an integral function, null otherwise
+    private int[] integerValues;
+
+    // The mask used to map a hash into a slot
+    private int mask;
+
+    /**
+     * Constructor that takes the coordinates of the cities, for euclidean distances
+     * @param double[] the x coordinates of the cities
+     * @param double[] the y coordinates of the cities
+     */
+    public DistanceCache(double[] xs, double[] ys) {
+        this(xs, ys, DistanceFunction.EUCLIDEAN);
+    }
+
+    /**
+     * Constructor that takes the coordinates of the cities and how to compute their distances
+     * @param double[] the x coordinates of the cities
+     * @param double[] the y coordinates of the cities
+     * @param DistanceFunction how the distances are computed
+     */
+    public DistanceCache(double[] xs, double[] ys, DistanceFunction function) {
+        this.xs = xs;
+        this.ys = ys;
+        this.function = function;
+
+        // Round the capacity up to a power of two so a mask can be used
+        int capacity = Integer.highestOneBit(Math.max(xs.length * SLOTS_PER_CITY, 16) - 1) << 1;
+        this.keys = new long[capacity];
+        if(function.isIntegral()) {
+            this.integerValues = new int[capacity];
+        } else {
+            this.values = new double[capacity];
+        }
+        this.mask = capacity - 1;
+        Arrays.fill(this.keys, -1L);
+    }
+
+    /**
+     * This function returns the distance between two cities, computing it
+     * only when the pair is not in the cache
+     * @see DistanceProvider#get(int, int)
+     */
+    public double get(int i, int j) {
+        if(i == j) {
+            return 0;
+        }
+        long key = i < j? ((long) i << 32) | j: ((long) j << 32) | i;
+        int slot = hash(key) & mask;
+        if(keys[slot] == key) {
+            return integerValues != null? integerValues[slot]: values[slot];
+        }
+
+        double distance = function.distance(xs[i], ys[i], xs[j], ys[j]);
+
+        // Evict the previous pair
+        keys[slot] = key;
+        if(integerValues != null) {
+            integerValues[slot] = (int) distance;
+        } else {
+            values[slot] = distance;
+        }
+        return distance;
+    }
+
+    /**
+     * This function mixes the bits of the key so consecutive pairs spread over the cache
+     * @param long the encoded pair
+     * @return int the hash of the pair
+     */
+    private static int hash(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32));
+    }
+
+}
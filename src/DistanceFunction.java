@@ -0,0 +1,120 @@
+/**
+ * This enumeration lists the ways the distance between two cities is computed
+ * from their coordinates, following the EDGE_WEIGHT_TYPE of TSPLIB. All of
+ * them but EUCLIDEAN round to integers, as the published optima do, so the
+ * distances can be stored as int and the gains add up exactly.
+ */
+public enum DistanceFunction {
+    // The exact euclidean distance, for files without EDGE_WEIGHT_TYPE
+    EUCLIDEAN(false) {
+        public double distance(double x1, double y1, double x2, double y2) {
+            double dx = x1 - x2;
+            double dy = y1 - y2;
+            return Math.sqrt(dx * dx + dy * dy);
+        }
+    },
+
+    // The euclidean distance rounded to the nearest integer
+    EUC_2D(true) {
+        public double distance(double x1, double y1, double x2, double y2) {
+            double dx = x1 - x2;
+            double dy = y1 - y2;
+            return (int) (Math.sqrt(dx * dx + dy * dy) + 0.5);
+        }
+    },
+
+    // The euclidean distance rounded up
+    CEIL_2D(true) {
+        public double distance(double x1, double y1, double x2, double y2) {
+            double dx = x1 - x2;
+            double dy = y1 - y2;
+            return Math.ceil(Math.sqrt(dx * dx + dy * dy));
+        }
+    },
+
+    // The pseudo-euclidean distance of the att48 and att532 instances
+    ATT(true) {
+        public double distance(double x1, double y1, double x2, double y2) {
+            double dx = x1 - x2;
+            double dy = y1 - y2;
+            double r = Math.sqrt((dx * dx + dy * dy) / 10.0);
+            int t = (int) (r + 0.5);
+            return t < r? t + 1: t;
+        }
+    },
+
+    // The distance on the earth, the coordinates being the latitude and the longitude in DDD.MM
+    GEO(true) {
+        public double distance(double x1, double y1, double x2, double y2) {
+            double latitude1 = radians(x1), longitude1 = radians(y1);
+            double latitude2 = radians(x2), longitude2 = radians(y2);
+            double q1 = Math.cos(longitude1 - longitude2);
+            double q2 = Math.cos(latitude1 - latitude2);
+            double q3 = Math.cos(latitude1 + latitude2);
+            return (int) (EARTH_RADIUS * Math.acos(0.5 * ((1.0 + q1) * q2 - (1.0 - q1) * q3)) + 1.0);
+        }
+    };
+
+    // The radius of the idealized earth of TSPLIB (in km)
+    private static final double EARTH_RADIUS = 6378.388;
+
+    // The value of pi used by TSPLIB to convert the coordinates
+    private static final double PI = 3.141592;
+
+    // Whether the distances are always integers
+    private final boolean integral;
+
+    /**
+     * Constructor that tells whether the distances are integers
+     * @param boolean true if the distances are always integers
+     */
+    private DistanceFunction(boolean integral) {
+        this.integral = integral;
+    }
+
+    /**
+     * This function computes the distance between two points
+     * @param double the x coordinate of the first point
+     * @param double the y coordinate of the first point
+     * @param double the x coordinate of the second point
+     * @param double the y coordinate of the second point
+     * @return double the distance, an integer value if the function is integral
+     */
+    public abstract double distance(double x1, double y1, double x2, double y2);
+
+    /**
+     * This function checks whether the distances are always integers, so they can be stored as int
+     * @param None
+     * @return boolean true if the distances are integers
+     */
+    public boolean isIntegral() {
+        return this.integral;
+    }
+
+    /**
+     * This function returns the function for an EDGE_WEIGHT_TYPE of TSPLIB
+     * @param String the value of EDGE_WEIGHT_TYPE
+     * @return DistanceFunction the function
+     * @throws IllegalArgumentException if the type is not supported
+     */
+    public static DistanceFunction fromEdgeWeightType(String type) {
+        for(DistanceFunction function: values()) {
+            if(function != EUCLIDEAN && function.name().equals(type)) {
+                return function;
+            }
+        }
+        throw new IllegalArgumentException("The EDGE_WEIGHT_TYPE " + type + " is not supported");
+    }
+
+    /**
+     * This function converts a coordinate in DDD.MM (degrees and minutes) to radians
+     * @param double the coordinate
+     * @return double the angle in radians
+     */
+    private static double radians(double coordinate) {
+        int degrees = (int) coordinate;
+        double minutes = coordinate - degrees;
+        return PI * (degrees + 5.0 * minutes / 3.0) / 180.0;
+    }
+
+}
@@ -0,0 +1,178 @@
+/**
+ * This class computes distances from one point to a block of cities, the
+ * coordinates being stored as a structure of arrays. It is the scalar
+ * implementation, one pair at a time; VectorKernel overrides it with SIMD
+ * code built on the jdk.incubator.vector module, several lanes at a time.
+ *
+ * The vector kernel is only used when the module has been added to the JVM
+ * (java --add-modules jdk.incubator.vector) and the system property
+ * lk.kernel is not "scalar". Both kernels give exactly the same results,
+ * which Checks verifies on every instance it is given.
+ */
+public class DistanceKernel {
+
+    // The kernel used by the solver, the vector one when it is available
+    private static final DistanceKernel INSTANCE = load();
+
+    // The scalar kernel, the reference of the vector one
+    private static final DistanceKernel SCALAR = new DistanceKernel();
+
+    /**
+     * Constructor, only for the subclasses: the kernels are obtained with get
+     */
+    protected DistanceKernel() {
+    }
+
+    /**
+     * This function returns the kernel to use
+     * @param None
+     * @return DistanceKernel the vector kernel if it is available, the scalar one otherwise
+     */
+    public static DistanceKernel get() {
+        return INSTANCE;
+    }
+
+    /**
+     * This function returns the scalar kernel, for instance to check the vector one
+     * @param None
+     * @return DistanceKernel the scalar kernel
+     */
+    public static DistanceKernel scalar() {
+        return SCALAR;
+    }
+
+    /**
+     * This function loads the vector kernel if the module is there. It is loaded by
+     * name, so this class does not depend on the module when it is missing
+     * @param None
+     * @return DistanceKernel the best kernel available
+     */
+    private static DistanceKernel load() {
+        if(!"scalar".equals(System.getProperty("lk.kernel"))
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (DistanceKernel) Class.forName("VectorKernel").getDeclaredConstructor().newInstance();
+            } catch(ReflectiveOperationException | LinkageError e) {
+                System.err.println("The vector kernel is not available: " + e);
+            }
+        }
+        return new DistanceKernel();
+    }
+
+    /**
+     * Getter that returns the name of the kernel
+     * @param None
+     * @return String the name of the kernel
+     */
+    public String getName() {
+        return "scalar";
+    }
+
+    /**
+     * This function computes the squared euclidean distances from a point to a block of cities
+     * @param double the x coordinate of the point
+     * @param double the y coordinate of the point
+     * @param double[] the x coordinates of the cities
+     * @param double[] the y coordinates of the cities
+     * @param int the first city of the block
+     * @param int the city after the last one of the block
+     * @param double[] where the distance to city i is written, at index i
+     * @return void
+     */
+    public void squaredDistances(double x, double y, double[] xs, double[] ys, int from, int to, double[] out) {
+        for(int i = from; i < to; ++i) {
+            double dx = x - xs[i];
+            double dy = y - ys[i];
+            out[i] = dx * dx + dy * dy;
+        }
+    }
+
+    /**
+     * This function computes the distances from a point to a block of cities
+     * @param DistanceFunction how the distances are computed
+     * @param double the x coordinate of the point
+     * @param double the y coordinate of the point
+     * @param double[] the x coordinates of the cities
+     * @param double[] the y coordinates of the cities
+     * @param int the first city of the block
+     * @param int the city after the last one of the block
+     * @param double[] where the distance to city i is written, at index i
+     * @return void
+     */
+    public void distances(DistanceFunction function, double x, double y, double[] xs, double[] ys, int from, int to, double[] out) {
+        for(int i = from; i < to; ++i) {
+            out[i] = function.distance(x, y, xs[i], ys[i]);
+        }
+    }
+
+    /**
+     * This function finds the smallest value of a block
+     * @param double[] the values
+     * @param int the first index of the block
+     * @param int the index after the last one of the block
+     * @return int the index of the smallest value (the first one among equals), -1 if the block is empty
+     */
+    public int argmin(double[] values, int from, int to) {
+        int best = -1;
+        for(int i = from; i < to; ++i) {
+            if(best == -1 || values[i] < values[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * This function finds the k cities of a block nearest to a point, by squared euclidean distance
+     * @param double the x coordinate of the point
+     * @param double the y coordinate of the point
+     * @param double[] the x coordinates of the cities
+     * @param double[] the y coordinates of the cities
+     * @param int the first city of the block
+     * @param int the city after the last one of the block
+     * @param int the number of cities wanted
+     * @param int[] where the cities are written, from the nearest to the farthest (at least k entries)
+     * @param double[] where their squared distances are written (at least k entries), so the
+     * caller can reuse the same array from one call to the next
+     * @return int the number of cities written, less than k if the block is smaller
+     */
+    public int nearest(double x, double y, double[] xs, double[] ys, int from, int to, int k, int[] result, double[] distances) {
+        if(k <= 0) {
+            return 0;
+        }
+        int count = 0;
+        for(int i = from; i < to; ++i) {
+            double dx = x - xs[i];
+            double dy = y - ys[i];
+            count = insert(i, dx * dx + dy * dy, k, result, distances, count);
+        }
+        return count;
+    }
+
+    /**
+     * This function inserts a city in a sorted list of the nearest ones, when it is near enough.
+     * Among equal distances the city seen first stays first
+     * @param int the city
+     * @param double its squared distance
+     * @param int the length of the list when it is full
+     * @param int[] the cities of the list
+     * @param double[] their squared distances
+     * @param int the number of cities in the list
+     * @return int the new number of cities in the list
+     */
+    protected static int insert(int city, double d, int k, int[] cities, double[] distances, int count) {
+        if(k <= 0 || (count == k && d >= distances[k - 1])) {
+            return count;
+        }
+        int i = count < k? count++: k - 1;
+        while(i > 0 && distances[i - 1] > d) {
+            cities[i] = cities[i - 1];
+            distances[i] = distances[i - 1];
+            i--;
+        }
+        cities[i] = city;
+        distances[i] = d;
+        return count;
+    }
+
+}
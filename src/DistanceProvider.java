@@ -0,0 +1,16 @@
+/**
+ * This interface abstracts the way the distances between the cities are
+ * obtained, so the algorithm does not need to know whether they are stored
+ * in a table or computed on demand
+ */
+public interface DistanceProvider {
+
+    /**
+     * This function returns the distance between two cities
+     * @param int the number of the first city
+     * @param int the number of the second city
+     * @return double the distance between both cities
+     */
+    public double get(int i, int j);
+
+}
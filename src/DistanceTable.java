@@ -0,0 +1,96 @@
+/**
+ * This class stores the distances of all the pairs of cities in a full table.
+ * It is the fastest provider but its memory grows with the square of the
+ * number of cities, so it is only meant for small instances.
+ * The distances of an integral function are stored as int, in half the memory
+ */
+public class DistanceTable implements DistanceProvider {
+    /*
+     * Instance variables
+     */
+
+    // The distance table, null when the distances are integers
+    private double[][] distanceTable;
+
+    // The distance table of an integral function, null otherwise
+    private int[][] integerTable;
+
+    /**
+     * Constructor that computes the euclidean distances from the coordinates of the cities
+     * @param double[] the x coordinates of the cities
+     * @param double[] the y coordinates of the cities
+     */
+    public DistanceTable(double[] xs, double[] ys) {
+        this(xs, ys, DistanceFunction.EUCLIDEAN);
+    }
+
+    /**
+     * Constructor that computes the distances from the coordinates of the cities
+     * @param double[] the x coordinates of the cities
+     * @param double[] the y coordinates of the cities
+     * @param DistanceFunction how the distances are computed
+     */
+    public DistanceTable(double[] xs, double[] ys, DistanceFunction function) {
+        if(function.isIntegral()) {
+            this.integerTable = initIntegerTable(xs, ys, function);
+        } else {
+            this.distanceTable = initDistanceTable(xs, ys, function);
+        }
+    }
+
+    /**
+     * This functions creates a table with the distances of all the cities, a row at a time with the distance kernel
+     * @param double[] the x coordinates of the cities
+     * @param double[] the y coordinates of the cities
+     * @param DistanceFunction how the distances are computed
+     * @return double[][] a two dimensional array with all the distances
+     */
+    private static double[][] initDistanceTable(double[] xs, double[] ys, DistanceFunction function) {
+        int size = xs.length;
+        double[][] res = new double[size][size];
+        DistanceKernel kernel = DistanceKernel.get();
+
+        for(int i = 0; i < size-1; ++i) {
+            kernel.distances(function, xs[i], ys[i], xs, ys, i + 1, size, res[i]);
+            for(int j = i + 1; j < size; ++j) {
+                res[j][i] = res[i][j];
+            }
+        }
+        return res;
+    }
+
+    /**
+     * This functions creates a table with the distances of all the cities as integers, a row at a time
+     * @param double[] the x coordinates of the cities
+     * @param double[] the y coordinates of the cities
+     * @param DistanceFunction how the distances are computed, an integral one
+     * @return int[][] a two dimensional array with all the distances
+     */
+    private static int[][] initIntegerTable(double[] xs, double[] ys, DistanceFunction function) {
+        int size = xs.length;
+        int[][] res = new int[size][size];
+        DistanceKernel kernel = DistanceKernel.get();
+        double[] row = new double[size];
+
+        for(int i = 0; i < size-1; ++i) {
+            kernel.distances(function, xs[i], ys[i], xs, ys, i + 1, size, row);
+            for(int j = i + 1; j < size; ++j) {
+                res[i][j] = (int) row[j];
+                res[j][i] = res[i][j];
+            }
+        }
+        return res;
+    }
+
+    /**
+     * This function returns the distance stored in the table
+     * @see DistanceProvider#get(int, int)
+     */
+    public double get(int i, int j) {
+        if(this.integerTable != null) {
+            return this.integerTable[i][j];
+        }
+        return this.distanceTable[i][j];
+    }
+
+}
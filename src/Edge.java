@@ -61,15 +61,24 @@ public class Edge implements Comparable<Edge> {
     }
 
     /**
-     * Method that compares two edges, here to make this class Comparable
-     * @see java.util.Comparable
-     * @param Edge the edge that is going to be compared against this one
-     * @return boolean true if both share the same endpoints, false otherwise
+     * Method that compares two edges, consistent with hashCode so edges can be used in hash collections
+     * @param Object the object that is going to be compared against this one
+     * @return boolean true if it is an edge with the same endpoints, false otherwise
      */
-    public boolean equals(Edge e2) {
-    	if(e2 == null) return false;
+    public boolean equals(Object o) {
+    	if(!(o instanceof Edge)) return false;
+    	Edge e2 = (Edge) o;
         return (this.get1() == e2.get1()) && (this.get2() == e2.get2());
     }
+
+    /**
+     * Method that hashes the edge from its endpoints, the same in both directions
+     * @param None
+     * @return int the hash code
+     */
+    public int hashCode() {
+    	return Long.hashCode(EdgeSet.key(endPoint1, endPoint2));
+    }
     
     public String toString() {
     	return "("+ endPoint1 + ", " + endPoint2 + ")";
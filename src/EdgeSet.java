@@ -0,0 +1,172 @@
+import java.util.Arrays;
+
+/**
+ * This class is a set of undirected edges that does not create any object:
+ * an edge is encoded in a long, the smaller endpoint in the high bits and the
+ * bigger one in the low bits, and the keys are kept in an open-addressing
+ * table with linear probing. Adding, removing and looking up an edge take
+ * constant time on average.
+ */
+public class EdgeSet {
+    /*
+     * Instance variables
+     */
+
+    // The keys of the table, EMPTY in the free slots
+    private long[] keys;
+
+    // The number of slots minus one, the number of slots being a power of 2
+    private int mask;
+
+    // The number of edges in the set
+    private int size;
+
+    // The key of a free slot, no edge has it since the endpoints are not negative
+    private static final long EMPTY = -1L;
+
+    // The table grows when it is fuller than this
+    private static final double LOAD_FACTOR = 0.5;
+
+    /**
+     * Constructor that sizes the table for a number of edges
+     * @param int the expected number of edges
+     */
+    public EdgeSet(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expected / LOAD_FACTOR)) - 1) << 1;
+        this.keys = new long[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(this.keys, EMPTY);
+    }
+
+    /**
+     * This function encodes an edge as the key of the table
+     * @param int one endpoint
+     * @param int the other endpoint
+     * @return long the key, the same in both directions
+     */
+    public static long key(int a, int b) {
+        return a < b? ((long) a << 32) | b: ((long) b << 32) | a;
+    }
+
+    /**
+     * This function finds the first slot of a key
+     * @param long the key
+     * @return int the slot where the probing starts
+     */
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L; // Fibonacci hashing, the high bits are the well mixed ones
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * This function adds an edge to the set
+     * @param int one endpoint
+     * @param int the other endpoint
+     * @return boolean true if the edge was not in the set yet
+     */
+    public boolean add(int a, int b) {
+        long key = key(a, b);
+        int i = slot(key);
+        while(keys[i] != EMPTY) {
+            if(keys[i] == key) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        if(++size > LOAD_FACTOR * keys.length) {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * This function checks whether an edge is in the set
+     * @param int one endpoint
+     * @param int the other endpoint
+     * @return boolean true if the edge is in the set
+     */
+    public boolean contains(int a, int b) {
+        long key = key(a, b);
+        for(int i = slot(key); keys[i] != EMPTY; i = (i + 1) & mask) {
+            if(keys[i] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * This function removes an edge from the set. The keys that follow it in
+     * its cluster are shifted back, so no tombstone is left behind
+     * @param int one endpoint
+     * @param int the other endpoint
+     * @return boolean true if the edge was in the set
+     */
+    public boolean remove(int a, int b) {
+        long key = key(a, b);
+        int i = slot(key);
+        while(keys[i] != key) {
+            if(keys[i] == EMPTY) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+
+        int hole = i;
+        for(int j = (hole + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            // The key at j can fill the hole if its home is not between the hole and j (cyclically)
+            if(((j - home) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                hole = j;
+            }
+        }
+        keys[hole] = EMPTY;
+        size--;
+        return true;
+    }
+
+    /**
+     * This function removes all the edges, keeping the table
+     * @param None
+     * @return void
+     */
+    public void clear() {
+        if(size > 0) {
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+        }
+    }
+
+    /**
+     * This function doubles the table and inserts the keys again
+     * @param None
+     * @return void
+     */
+    private void grow() {
+        long[] old = keys;
+        keys = new long[2 * old.length];
+        mask = keys.length - 1;
+        Arrays.fill(keys, EMPTY);
+        for(long key: old) {
+            if(key != EMPTY) {
+                int i = slot(key);
+                while(keys[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+            }
+        }
+    }
+
+    /**
+     * Getter that returns the number of edges in the set
+     * @param None
+     * @return int the number of edges
+     */
+    public int size() {
+        return this.size;
+    }
+
+}
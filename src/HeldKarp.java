@@ -0,0 +1,688 @@
+import java.util.Arrays;
+
+/**
+ * This class computes the Held-Karp lower bound of an instance with the
+ * 1-tree subgradient optimization, and ranks the edges by their
+ * alpha-nearness to build better candidate lists than the nearest neighbors.
+ *
+ * A 1-tree is a spanning tree plus one more edge at a leaf (the special node);
+ * every tour is a 1-tree, so its length, with the penalties pi added to the
+ * edge costs and 2 * sum(pi) taken away, is a lower bound of the optimum. The
+ * subgradient moves pi to push the degrees of the 1-tree towards 2.
+ *
+ * The optimization runs on a sparse graph: the pool of nearest neighbors of
+ * every city plus the edges between consecutive cities of a Hilbert curve,
+ * which keep the graph connected. Nothing is quadratic in memory. The final
+ * bound is computed once more on the complete graph (quadratic in time but
+ * linear in memory) so it is a true lower bound, for instances up to
+ * CERTIFY_LIMIT cities.
+ *
+ * The alpha-nearness of an edge is how much longer the minimum 1-tree gets
+ * when it is forced to contain the edge: 0 for the edges of the tree, and the
+ * cost minus the longest edge on the tree path between its endpoints otherwise.
+ */
+public class HeldKarp {
+    /*
+     * Instance variables
+     */
+
+    // The instance
+    private Problem problem;
+
+    // The number of cities
+    private int size;
+
+    // The coordinates of the cities, taken once from the instance since they may be copies
+    private double[] xs;
+    private double[] ys;
+
+    // The start of the edges of every city in adjacent and costs, plus the end as last entry
+    private int[] offsets;
+
+    // The other endpoint of every edge of the sparse graph, both directions stored
+    private int[] adjacent;
+
+    // The cost of every edge of the sparse graph, without the penalties
+    private double[] costs;
+
+    // The penalties giving the best bound so far
+    private double[] penalties;
+
+    // The best bound found on the sparse graph
+    private double sparseBound;
+
+    // The lower bound, on the complete graph when it is certified
+    private double lowerBound;
+
+    // Whether the lower bound has been computed on the complete graph
+    private boolean certified;
+
+    // The number of 1-trees computed by the optimization
+    private int iterations;
+
+    // The parent of every city in the current tree, -1 for the root
+    private int[] parent;
+
+    // The cost of the edge to the parent, with the penalties
+    private double[] parentCost;
+
+    // The cities in the order they were added to the tree
+    private int[] order;
+
+    // The degree of every city in the current 1-tree
+    private int[] degree;
+
+    // The leaf that gets the extra edge of the current 1-tree
+    private int special;
+
+    // The cost of the extra edge, with the penalties
+    private double specialCost;
+
+    // The binary heap of Prim's algorithm, the cities sorted by key
+    private int[] heap;
+
+    // The position of every city in the heap, -1 if it is not in it
+    private int[] heapPosition;
+
+    // The cost of the cheapest edge from every city to the tree
+    private double[] key;
+
+    // The number of cities in the heap
+    private int heapSize;
+
+    // Above this number of cities the bound is not computed on the complete graph
+    public static final int CERTIFY_LIMIT = 20000;
+
+    // The first step of the optimization, relative to the average cost of an edge of the first 1-tree
+    private static final double INITIAL_STEP = 0.001;
+
+    // The longest first period of the optimization, so big instances converge in a few thousand 1-trees
+    private static final int MAX_PERIOD = 1000;
+
+    // The default number of nearest neighbors of every city in the sparse graph
+    public static final int DEFAULT_POOL_SIZE = 16;
+
+    /**
+     * Constructor that builds the sparse graph of an instance
+     * @param Problem the instance
+     * @param int the number of nearest neighbors of every city in the graph
+     */
+    public HeldKarp(Problem problem, int poolSize) {
+        if(problem.size() < 3) {
+            throw new IllegalArgumentException("A 1-tree needs at least 3 cities");
+        }
+        this.problem = problem;
+        this.size = problem.size();
+        this.xs = problem.getXs();
+        this.ys = problem.getYs();
+        this.penalties = new double[size];
+        this.parent = new int[size];
+        this.parentCost = new double[size];
+        this.order = new int[size];
+        this.degree = new int[size];
+        this.heap = new int[size];
+        this.heapPosition = new int[size];
+        this.key = new double[size];
+        buildGraph(poolSize);
+        this.sparseBound = oneTree(penalties);
+        this.lowerBound = this.sparseBound;
+    }
+
+    /**
+     * This function builds the sparse graph: the nearest neighbors of every city
+     * and the path of the Hilbert curve, without duplicates and in both directions
+     * @param int the number of nearest neighbors of every city
+     * @return void
+     */
+    private void buildGraph(int poolSize) {
+        DistanceFunction function = problem.getDistanceFunction();
+        CandidateSet nearest = new CandidateSet(xs, ys, poolSize);
+        int[] curve = HilbertCurve.order(xs, ys);
+
+        // Every edge once as (min << 32 | max), sorted so the duplicates are together
+        long[] edges = new long[size * nearest.getK() + size];
+        int m = 0;
+        for(int i = 0; i < size; ++i) {
+            for(int c = 0; c < nearest.size(i); ++c) {
+                edges[m++] = pack(i, nearest.get(i, c));
+            }
+        }
+        for(int i = 0; i < size; ++i) {
+            edges[m++] = pack(curve[i], curve[(i + 1) % size]);
+        }
+        Arrays.sort(edges, 0, m);
+
+        offsets = new int[size + 1];
+        int unique = 0;
+        for(int e = 0; e < m; ++e) {
+            if(e > 0 && edges[e] == edges[e - 1]) {
+                continue;
+            }
+            edges[unique++] = edges[e];
+            offsets[(int) (edges[e] >>> 32) + 1]++;
+            offsets[(int) edges[e] + 1]++;
+        }
+        for(int i = 0; i < size; ++i) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        adjacent = new int[2 * unique];
+        costs = new double[2 * unique];
+        int[] next = Arrays.copyOf(offsets, size);
+        for(int e = 0; e < unique; ++e) {
+            int a = (int) (edges[e] >>> 32);
+            int b = (int) edges[e];
+            double cost = function.distance(xs[a], ys[a], xs[b], ys[b]);
+            adjacent[next[a]] = b;
+            costs[next[a]++] = cost;
+            adjacent[next[b]] = a;
+            costs[next[b]++] = cost;
+        }
+    }
+
+    /**
+     * This function encodes an undirected edge in a long
+     * @param int one endpoint
+     * @param int the other endpoint
+     * @return long the smaller endpoint in the high bits, the bigger one in the low bits
+     */
+    private static long pack(int a, int b) {
+        return a < b? ((long) a << 32) | b: ((long) b << 32) | a;
+    }
+
+    /**
+     * This function runs the subgradient optimization with the step schedule of
+     * Helsgaun: the step doubles while the bound improves at the start, then it is
+     * halved with the length of the period after every period. It ends when the step
+     * or the period vanishes, a 1-tree is a tour, or a budget runs out
+     * @param int the maximum number of 1-trees to compute
+     * @param long the time limit in ms from now, 0 for no limit
+     * @return void
+     */
+    public void optimize(int maxIterations, long timeLimit) {
+        long deadline = timeLimit > 0? System.currentTimeMillis() + timeLimit: 0;
+        double[] pi = penalties.clone();
+        int[] subgradient = new int[size];
+        int[] previous = new int[size];
+        double step = Math.max(sparseBound, 1) / size * INITIAL_STEP;
+        boolean initial = true;
+
+        double w = oneTree(pi);
+        boolean tour = subgradient(subgradient);
+        System.arraycopy(subgradient, 0, previous, 0, size);
+        for(int period = Math.max(Math.min(size / 2, MAX_PERIOD), 100); !tour && step > 0 && period > 0; period /= 2, step /= 2) {
+            for(int p = 1; !tour && p <= period; ++p) {
+                if(iterations >= maxIterations || (deadline != 0 && System.currentTimeMillis() >= deadline)) {
+                    period = 0;
+                    break;
+                }
+
+                // The subgradient is the degree minus 2, mixed with the previous one to damp the zigzag
+                for(int i = 0; i < size; ++i) {
+                    pi[i] += step * (0.7 * subgradient[i] + 0.3 * previous[i]);
+                }
+                System.arraycopy(subgradient, 0, previous, 0, size);
+                w = oneTree(pi);
+                tour = subgradient(subgradient);
+                iterations++;
+
+                if(w > sparseBound + 1e-9) {
+                    sparseBound = w;
+                    System.arraycopy(pi, 0, penalties, 0, size);
+                    if(initial) {
+                        step *= 2;
+                    }
+                    if(p == period) {
+                        period *= 2;
+                    }
+                } else if(initial && p > period / 2) {
+                    initial = false;
+                    p = 0;
+                    step = 0.75 * step;
+                }
+            }
+        }
+
+        certified = false;
+        lowerBound = sparseBound;
+        oneTree(penalties);
+        if(size <= CERTIFY_LIMIT) {
+            lowerBound = completeOneTree(penalties);
+            certified = true;
+        }
+        if(problem.getDistanceFunction().isIntegral()) {
+            lowerBound = Math.ceil(lowerBound - 1e-6); // The tours have integer lengths
+        }
+    }
+
+    /**
+     * This function computes the subgradient of the current 1-tree, the degree of every city minus 2
+     * @param int[] where the subgradient is written
+     * @return boolean true if every degree is 2, that is the 1-tree is a tour
+     */
+    private boolean subgradient(int[] subgradient) {
+        boolean tour = true;
+        for(int i = 0; i < size; ++i) {
+            subgradient[i] = degree[i] - 2;
+            tour &= subgradient[i] == 0;
+        }
+        return tour;
+    }
+
+    /**
+     * This function computes the minimum 1-tree of the sparse graph for some penalties:
+     * a minimum spanning tree (Prim) plus the second cheapest edge of the leaf for which
+     * that edge is the most expensive. It fills parent, order, degree and special
+     * @param double[] the penalties
+     * @return double the lower bound given by the 1-tree
+     */
+    private double oneTree(double[] pi) {
+        Arrays.fill(key, Double.MAX_VALUE);
+        Arrays.fill(heapPosition, -1);
+        Arrays.fill(parent, -1);
+        Arrays.fill(degree, 0);
+        boolean[] inTree = new boolean[size];
+        heapSize = 0;
+        key[0] = 0;
+        push(0);
+
+        double w = 0;
+        int added = 0;
+        while(heapSize > 0) {
+            int u = pop();
+            inTree[u] = true;
+            order[added++] = u;
+            if(parent[u] != -1) {
+                w += parentCost[u];
+                degree[u]++;
+                degree[parent[u]]++;
+            }
+            for(int e = offsets[u]; e < offsets[u + 1]; ++e) {
+                int v = adjacent[e];
+                if(inTree[v]) {
+                    continue;
+                }
+                double c = costs[e] + pi[u] + pi[v];
+                if(c < key[v]) {
+                    key[v] = c;
+                    parent[v] = u;
+                    parentCost[v] = c;
+                    if(heapPosition[v] == -1) {
+                        push(v);
+                    } else {
+                        siftUp(heapPosition[v]);
+                    }
+                }
+            }
+        }
+        if(added != size) {
+            throw new IllegalStateException("The sparse graph is not connected");
+        }
+
+        // The leaf whose second cheapest edge is the most expensive one
+        special = -1;
+        specialCost = -Double.MAX_VALUE;
+        for(int leaf = 0; leaf < size; ++leaf) {
+            if(degree[leaf] != 1) {
+                continue;
+            }
+            int neighbor = treeNeighbor(leaf);
+            double second = Double.MAX_VALUE;
+            for(int e = offsets[leaf]; e < offsets[leaf + 1]; ++e) {
+                if(adjacent[e] != neighbor) {
+                    second = Math.min(second, costs[e] + pi[leaf] + pi[adjacent[e]]);
+                }
+            }
+            if(second != Double.MAX_VALUE && second > specialCost) {
+                special = leaf;
+                specialCost = second;
+            }
+        }
+        w += specialCost;
+        degree[special]++;
+        int neighbor = treeNeighbor(special);
+        for(int e = offsets[special]; e < offsets[special + 1]; ++e) {
+            if(adjacent[e] != neighbor && costs[e] + pi[special] + pi[adjacent[e]] == specialCost) {
+                degree[adjacent[e]]++;
+                break;
+            }
+        }
+
+        for(int i = 0; i < size; ++i) {
+            w -= 2 * pi[i];
+        }
+        return w;
+    }
+
+    /**
+     * This function returns the only neighbor of a leaf in the current tree
+     * @param int the leaf
+     * @return int its neighbor
+     */
+    private int treeNeighbor(int leaf) {
+        if(parent[leaf] != -1) {
+            return parent[leaf];
+        }
+        for(int e = offsets[leaf]; e < offsets[leaf + 1]; ++e) {
+            if(parent[adjacent[e]] == leaf) {
+                return adjacent[e];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * This function computes the minimum 1-tree of the complete graph with the special
+     * node of the current 1-tree: a minimum spanning tree of the other cities and the
+     * two cheapest edges of the special node. The distances are computed on the fly,
+     * so it takes quadratic time but linear memory. The cities out of the tree are kept
+     * packed at the start of the arrays, so every step is a run of the distance kernel
+     * over a contiguous block followed by a minimum
+     * @param double[] the penalties
+     * @return double the lower bound given by the 1-tree
+     */
+    private double completeOneTree(double[] pi) {
+        DistanceKernel kernel = DistanceKernel.get();
+        DistanceFunction function = problem.getDistanceFunction();
+        double[] distances = new double[size];
+
+        // The cities out of the tree: coordinates, penalty and cost of the cheapest edge to the tree
+        double[] outXs = new double[size];
+        double[] outYs = new double[size];
+        double[] outPi = new double[size];
+        double[] cheapest = new double[size];
+        int out = 0;
+        for(int v = 0; v < size; ++v) {
+            if(v != special) {
+                outXs[out] = xs[v];
+                outYs[out] = ys[v];
+                outPi[out] = pi[v];
+                cheapest[out++] = Double.MAX_VALUE;
+            }
+        }
+
+        double w = 0;
+        int next = out - 1;
+        cheapest[next] = 0;
+        while(out > 0) {
+            // Move the closest city to the tree, filling its slot with the last one
+            double x = outXs[next], y = outYs[next], p = outPi[next];
+            w += cheapest[next];
+            out--;
+            outXs[next] = outXs[out];
+            outYs[next] = outYs[out];
+            outPi[next] = outPi[out];
+            cheapest[next] = cheapest[out];
+
+            kernel.distances(function, x, y, outXs, outYs, 0, out, distances);
+            for(int v = 0; v < out; ++v) {
+                double c = distances[v] + p + outPi[v];
+                if(c < cheapest[v]) {
+                    cheapest[v] = c;
+                }
+            }
+            next = kernel.argmin(cheapest, 0, out);
+        }
+
+        kernel.distances(function, xs[special], ys[special], xs, ys, 0, size, distances);
+        double first = Double.MAX_VALUE, second = Double.MAX_VALUE;
+        for(int v = 0; v < size; ++v) {
+            if(v == special) {
+                continue;
+            }
+            double c = distances[v] + pi[special] + pi[v];
+            if(c < first) {
+                second = first;
+                first = c;
+            } else if(c < second) {
+                second = c;
+            }
+        }
+        w += first + second;
+
+        for(int i = 0; i < size; ++i) {
+            w -= 2 * pi[i];
+        }
+        return w;
+    }
+
+    /**
+     * This function builds candidate lists from the alpha-nearness of the edges of the
+     * sparse graph, with the best penalties: every city keeps its k edges of lowest alpha
+     * (the cheapest first among equal alphas). Inside a list the candidates are then sorted
+     * by distance, as the move search expects
+     * @param int the number of candidates per city
+     * @return CandidateSet the candidate lists
+     */
+    public CandidateSet alphaCandidates(int k) {
+        double[] pi = penalties;
+        oneTree(pi);
+
+        // Binary lifting over the tree: the 2^l-th ancestor and the longest edge on the way
+        int levels = Math.max(1, 32 - Integer.numberOfLeadingZeros(size));
+        int[] up = new int[levels * size];
+        double[] longest = new double[levels * size];
+        int[] depth = new int[size];
+        for(int n = 0; n < size; ++n) {
+            int v = order[n];
+            if(parent[v] == -1) {
+                up[v] = v;
+            } else {
+                up[v] = parent[v];
+                longest[v] = parentCost[v];
+                depth[v] = depth[parent[v]] + 1;
+            }
+        }
+        for(int l = 1; l < levels; ++l) {
+            for(int v = 0; v < size; ++v) {
+                int half = up[(l - 1) * size + v];
+                up[l * size + v] = up[(l - 1) * size + half];
+                longest[l * size + v] = Math.max(longest[(l - 1) * size + v], longest[(l - 1) * size + half]);
+            }
+        }
+
+        int specialNeighbor = treeNeighbor(special);
+        int[] neighbors = new int[size * k];
+        int[] counts = new int[size];
+        int[] edges = new int[16];
+        double[] alphas = new double[16];
+        for(int i = 0; i < size; ++i) {
+            int d = offsets[i + 1] - offsets[i];
+            if(d > edges.length) {
+                edges = new int[d];
+                alphas = new double[d];
+            }
+            for(int n = 0; n < d; ++n) {
+                int e = offsets[i] + n;
+                int j = adjacent[e];
+                double c = costs[e] + pi[i] + pi[j];
+                double alpha;
+                if(i == special || j == special) {
+                    int other = i == special? j: i;
+                    alpha = other == specialNeighbor? 0: Math.max(0, c - specialCost);
+                } else {
+                    alpha = c - longestOnPath(i, j, up, longest, depth, levels);
+                }
+                edges[n] = e;
+                alphas[n] = alpha;
+            }
+
+            // Insertion sort by alpha, then cost: the lists are short
+            for(int a = 1; a < d; ++a) {
+                int e = edges[a];
+                double alpha = alphas[a];
+                int b = a - 1;
+                while(b >= 0 && (alphas[b] > alpha || (alphas[b] == alpha && costs[edges[b]] > costs[e]))) {
+                    edges[b + 1] = edges[b];
+                    alphas[b + 1] = alphas[b];
+                    b--;
+                }
+                edges[b + 1] = e;
+                alphas[b + 1] = alpha;
+            }
+
+            int count = Math.min(k, d);
+            for(int a = 1; a < count; ++a) {
+                int e = edges[a];
+                int b = a - 1;
+                while(b >= 0 && costs[edges[b]] > costs[e]) {
+                    edges[b + 1] = edges[b];
+                    b--;
+                }
+                edges[b + 1] = e;
+            }
+            for(int a = 0; a < count; ++a) {
+                neighbors[i * k + a] = adjacent[edges[a]];
+            }
+            counts[i] = count;
+        }
+        return new CandidateSet(k, neighbors, counts);
+    }
+
+    /**
+     * This function finds the longest edge on the tree path between two cities
+     * @param int the first city
+     * @param int the second city
+     * @param int[] the ancestors of every city by powers of 2
+     * @param double[] the longest edge up to each of those ancestors
+     * @param int[] the depth of every city in the tree
+     * @param int the number of powers of 2
+     * @return double the cost of the longest edge, with the penalties
+     */
+    private double longestOnPath(int u, int v, int[] up, double[] longest, int[] depth, int levels) {
+        double best = 0;
+        if(depth[u] < depth[v]) {
+            int t = u; u = v; v = t;
+        }
+        int diff = depth[u] - depth[v];
+        for(int l = 0; diff > 0; ++l, diff >>= 1) {
+            if((diff & 1) != 0) {
+                best = Math.max(best, longest[l * size + u]);
+                u = up[l * size + u];
+            }
+        }
+        if(u == v) {
+            return best;
+        }
+        for(int l = levels - 1; l >= 0; --l) {
+            if(up[l * size + u] != up[l * size + v]) {
+                best = Math.max(best, Math.max(longest[l * size + u], longest[l * size + v]));
+                u = up[l * size + u];
+                v = up[l * size + v];
+            }
+        }
+        return Math.max(best, Math.max(longest[u], longest[v]));
+    }
+
+    /**
+     * This function adds a city to the heap
+     * @param int the city
+     * @return void
+     */
+    private void push(int city) {
+        heap[heapSize] = city;
+        heapPosition[city] = heapSize;
+        siftUp(heapSize++);
+    }
+
+    /**
+     * This function removes the city with the lowest key from the heap
+     * @param None
+     * @return int the city
+     */
+    private int pop() {
+        int top = heap[0];
+        heapPosition[top] = -1;
+        heapSize--;
+        if(heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapPosition[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    /**
+     * This function moves a city of the heap up until its parent has a lower key
+     * @param int the position of the city
+     * @return void
+     */
+    private void siftUp(int i) {
+        int city = heap[i];
+        while(i > 0) {
+            int p = (i - 1) >>> 1;
+            if(key[heap[p]] <= key[city]) {
+                break;
+            }
+            heap[i] = heap[p];
+            heapPosition[heap[i]] = i;
+            i = p;
+        }
+        heap[i] = city;
+        heapPosition[city] = i;
+    }
+
+    /**
+     * This function moves a city of the heap down until its children have higher keys
+     * @param int the position of the city
+     * @return void
+     */
+    private void siftDown(int i) {
+        int city = heap[i];
+        while(true) {
+            int c = 2 * i + 1;
+            if(c >= heapSize) {
+                break;
+            }
+            if(c + 1 < heapSize && key[heap[c + 1]] < key[heap[c]]) {
+                c++;
+            }
+            if(key[heap[c]] >= key[city]) {
+                break;
+            }
+            heap[i] = heap[c];
+            heapPosition[heap[i]] = i;
+            i = c;
+        }
+        heap[i] = city;
+        heapPosition[city] = i;
+    }
+
+    /**
+     * Getter that returns the lower bound of the length of any tour
+     * @param None
+     * @return double the lower bound
+     */
+    public double getLowerBound() {
+        return this.lowerBound;
+    }
+
+    /**
+     * Getter that returns whether the bound has been computed on the complete graph.
+     * Otherwise it only bounds the tours that use edges of the sparse graph
+     * @param None
+     * @return boolean true if the bound holds for every tour
+     */
+    public boolean isCertified() {
+        return this.certified;
+    }
+
+    /**
+     * Getter that returns the number of 1-trees computed by the optimization
+     * @param None
+     * @return int the number of iterations
+     */
+    public int getIterations() {
+        return this.iterations;
+    }
+
+    /**
+     * Getter that returns the penalties giving the best bound
+     * @param None
+     * @return double[] the penalty of every city (not to be modified)
+     */
+    public double[] getPenalties() {
+        return this.penalties;
+    }
+
+}
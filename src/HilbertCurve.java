@@ -0,0 +1,101 @@
+import java.util.Arrays;
+
+/**
+ * This class maps the cities to their position along a Hilbert curve, so
+ * cities that are close in the plane get close positions along the curve
+ */
+public class HilbertCurve {
+
+    // The number of bits per coordinate of the grid the curve goes through, the
+    // positions take 2 * ORDER bits and have to stay positive once shifted by 32
+    private static final int ORDER = 15;
+
+    /**
+     * This function returns the position along the curve of a cell of the grid
+     * @param int the x coordinate of the cell (0 to 2^ORDER - 1)
+     * @param int the y coordinate of the cell (0 to 2^ORDER - 1)
+     * @return long the position along the curve
+     */
+    public static long index(int x, int y) {
+        int n = 1 << ORDER;
+        long d = 0;
+        for(int s = n >>> 1; s > 0; s >>>= 1) {
+            int rx = (x & s) != 0? 1: 0;
+            int ry = (y & s) != 0? 1: 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+
+            // Rotate the quadrant so the curve stays continuous
+            if(ry == 0) {
+                if(rx == 1) {
+                    x = n - 1 - x;
+                    y = n - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    /**
+     * This function sorts the cities by their position along the curve
+     * @param double[] the x coordinates of the cities
+     * @param double[] the y coordinates of the cities
+     * @return int[] the cities in the order the curve visits them
+     */
+    public static int[] order(double[] xs, double[] ys) {
+        int size = xs.length;
+        double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for(int i = 0; i < size; ++i) {
+            minX = Math.min(minX, xs[i]);
+            maxX = Math.max(maxX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+
+        // Same scale on both axes so the curve does not stretch the plane
+        double extent = Math.max(maxX - minX, maxY - minY);
+        double scale = extent > 0? ((1 << ORDER) - 1) / extent: 0;
+
+        // Sort (index, city) pairs packed in a long, the index in the high 2 * ORDER bits
+        long[] keys = new long[size];
+        for(int i = 0; i < size; ++i) {
+            int x = (int) ((xs[i] - minX) * scale);
+            int y = (int) ((ys[i] - minY) * scale);
+            keys[i] = (index(x, y) << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        int[] order = new int[size];
+        for(int i = 0; i < size; ++i) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    /**
+     * This function renumbers the cities in the order the curve visits them, so cities
+     * that are close in the plane get close indices: the coordinates, the rows of the
+     * distance table and the tour arrays are then read with fewer cache misses. The
+     * arrays are permuted in place and the ids follow the cities, so they still give
+     * the original numbers of the cities
+     * @param double[] the x coordinates of the cities
+     * @param double[] the y coordinates of the cities
+     * @param int[] the ids of the cities
+     * @return void
+     */
+    public static void renumber(double[] xs, double[] ys, int[] ids) {
+        int[] order = order(xs, ys);
+        double[] oldXs = xs.clone();
+        double[] oldYs = ys.clone();
+        int[] oldIds = ids.clone();
+        for(int i = 0; i < order.length; ++i) {
+            xs[i] = oldXs[order[i]];
+            ys[i] = oldYs[order[i]];
+            ids[i] = oldIds[order[i]];
+        }
+    }
+
+}
@@ -0,0 +1,14 @@
+/**
+ * This interface is notified every time an asynchronous solve finds a better
+ * tour. It is called on the thread of the solve, so it should return quickly.
+ */
+public interface ImprovementListener {
+
+    /**
+     * This function receives a better tour
+     * @param TourSnapshot the new best tour
+     * @return void
+     */
+    void improved(TourSnapshot snapshot);
+
+}
@@ -0,0 +1,16 @@
+/**
+ * This enumeration lists the ways the starting tour of the algorithm can be built
+ */
+public enum InitialTour {
+    // A random permutation of the cities (the drunken sailor)
+    RANDOM,
+
+    // Always go to the nearest city not visited yet
+    NEAREST_NEIGHBOR,
+
+    // Add the shortest candidate edges that keep the tour valid, then join the fragments
+    GREEDY,
+
+    // Visit the cities in the order of a Hilbert curve
+    SPACE_FILLING_CURVE
+}
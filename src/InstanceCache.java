@@ -0,0 +1,248 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class keeps a binary copy of an instance next to its .tsp file, so
+ * solving the same instance again does not parse the text nor search the
+ * nearest neighbors again. The cities are renumbered along a Hilbert curve
+ * when the sidecar is built (the ids keep the original numbers), so the
+ * sidecar is read back already in that order.
+ *
+ * The sidecar (file.tsp.lkc) holds a versioned header, the ids and the
+ * coordinates, and optionally the candidate lists. The header records the
+ * size and the modification time of the .tsp file, a sidecar that does not
+ * match them is stale and gets rebuilt.
+ *
+ * Layout (big-endian): int magic, int version, long source size,
+ * long source modification time, int cities, int k (0 without candidates),
+ * int distance function (its ordinal), int[cities] ids, double[cities] xs, double[cities] ys, and if k > 0
+ * int[cities] counts, int[cities * k] candidates.
+ * SegmentProblem maps this layout as it is, without reading it on the heap.
+ */
+public class InstanceCache {
+
+    // The first bytes of every sidecar ("LKIC")
+    private static final int MAGIC = 0x4C4B4943;
+
+    // The version of the layout and of how its data is built, a sidecar with another version is rebuilt
+    private static final int VERSION = 5;
+
+    // The size of the header in bytes, the cities, k and the distance function are its last 3 ints
+    public static final int HEADER_SIZE = 36;
+
+    // The extension added to the name of the .tsp file
+    public static final String EXTENSION = ".lkc";
+
+    /**
+     * This function loads an instance from its sidecar, rebuilding the sidecar
+     * from the .tsp file when it is missing or stale
+     * @param File the .tsp file
+     * @param int the number of candidate neighbors per city
+     * @return Problem the instance
+     * @throws IOException if the .tsp file can not be read
+     */
+    public static Problem load(File file, int k) throws IOException {
+        File sidecar = sidecarOf(file);
+        Problem problem = read(sidecar, file, k);
+        if(problem != null) {
+            return problem;
+        }
+
+        TsplibParser parser = new TsplibParser(file);
+        HilbertCurve.renumber(parser.getXs(), parser.getYs(), parser.getIds());
+        problem = new Problem(parser.getXs(), parser.getYs(), parser.getIds(), k, parser.getDistanceFunction());
+        try {
+            write(sidecar, file, problem, true);
+        } catch(IOException e) {
+            // The cache is only an optimization, a read-only folder must not stop the solve
+            System.err.println("Could not write " + sidecar + ": " + e.getMessage());
+        }
+        return problem;
+    }
+
+    /**
+     * This function makes sure the sidecar of a .tsp file is up to date and holds
+     * the candidate lists for k, so it can be used without reading the .tsp file
+     * @param File the .tsp file
+     * @param int the number of candidate neighbors per city
+     * @return File the sidecar
+     * @throws IOException if the sidecar can not be written
+     */
+    public static File prepare(File file, int k) throws IOException {
+        File sidecar = sidecarOf(file);
+        if(!holdsCandidates(sidecar, file, k)) {
+            write(sidecar, file, load(file, k), true);
+        }
+        return sidecar;
+    }
+
+    /**
+     * This function checks the header of a sidecar without reading the rest of it
+     * @param File the sidecar
+     * @param File the .tsp file it was built from
+     * @param int the number of candidate neighbors per city
+     * @return boolean true if the sidecar is up to date and holds the candidate lists for k
+     * @throws IOException if the sidecar exists but can not be read
+     */
+    private static boolean holdsCandidates(File sidecar, File source, int k) throws IOException {
+        if(!sidecar.isFile()) {
+            return false;
+        }
+        try(FileChannel channel = FileChannel.open(sidecar.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+            while(buffer.hasRemaining() && channel.read(buffer) >= 0);
+            buffer.flip();
+            if(buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || buffer.getLong() != source.length() || buffer.getLong() != source.lastModified()) {
+                return false;
+            }
+            int size = buffer.getInt();
+            int cachedK = buffer.getInt();
+            int metric = buffer.getInt();
+            return size > 0 && cachedK > 0 && cachedK == Math.min(k, size - 1) && channel.size() == sizeOf(size, cachedK)
+                && metric >= 0 && metric < DistanceFunction.values().length;
+        }
+    }
+
+    /**
+     * This function returns the sidecar of a .tsp file
+     * @param File the .tsp file
+     * @return File the sidecar
+     */
+    public static File sidecarOf(File file) {
+        return new File(file.getPath() + EXTENSION);
+    }
+
+    /**
+     * This function reads a sidecar if it is up to date. The candidate lists are
+     * taken from it when they were built with the same k, otherwise they are rebuilt
+     * from the coordinates
+     * @param File the sidecar
+     * @param File the .tsp file it was built from
+     * @param int the number of candidate neighbors per city
+     * @return Problem the instance, null if the sidecar is missing, stale or invalid
+     * @throws IOException if the sidecar exists but can not be read
+     */
+    public static Problem read(File sidecar, File source, int k) throws IOException {
+        if(!sidecar.isFile()) {
+            return null;
+        }
+        try(FileChannel channel = FileChannel.open(sidecar.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            if(length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if(buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || buffer.getLong() != source.length() || buffer.getLong() != source.lastModified()) {
+                return null;
+            }
+            int size = buffer.getInt();
+            int cachedK = buffer.getInt();
+            int metric = buffer.getInt();
+            if(size < 0 || cachedK < 0 || length != sizeOf(size, cachedK)
+                    || metric < 0 || metric >= DistanceFunction.values().length) {
+                return null;
+            }
+            DistanceFunction function = DistanceFunction.values()[metric];
+
+            int[] ids = new int[size];
+            double[] xs = new double[size];
+            double[] ys = new double[size];
+            buffer.asIntBuffer().get(ids);
+            buffer.position(buffer.position() + 4 * size);
+            buffer.asDoubleBuffer().get(xs);
+            buffer.position(buffer.position() + 8 * size);
+            buffer.asDoubleBuffer().get(ys);
+            buffer.position(buffer.position() + 8 * size);
+
+            if(cachedK == 0 || cachedK != Math.max(0, Math.min(k, size - 1))) {
+                return new Problem(xs, ys, ids, k, function);
+            }
+            long start = System.currentTimeMillis();
+            int[] counts = new int[size];
+            int[] neighbors = new int[size * cachedK];
+            buffer.asIntBuffer().get(counts);
+            buffer.position(buffer.position() + 4 * size);
+            buffer.asIntBuffer().get(neighbors);
+            Problem problem = new Problem(xs, ys, ids, new CandidateSet(cachedK, neighbors, counts), function);
+            problem.setCandidateTime(System.currentTimeMillis() - start, true);
+            return problem;
+        }
+    }
+
+    /**
+     * This function writes the sidecar of an instance. It is written to a temporary
+     * file first and then moved, so a reader never sees half a sidecar
+     * @param File the sidecar
+     * @param File the .tsp file the instance was read from
+     * @param Problem the instance
+     * @param boolean true to store the candidate lists too
+     * @return void
+     * @throws IOException if the sidecar can not be written
+     */
+    public static void write(File sidecar, File source, Problem problem, boolean withCandidates) throws IOException {
+        int size = problem.size();
+        CandidateSet candidates = problem.getCandidates();
+        int k = withCandidates? candidates.getK(): 0;
+
+        long length = sizeOf(size, k);
+        if(length > Integer.MAX_VALUE) {
+            throw new IOException("The instance is too big for a sidecar");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(source.length());
+        buffer.putLong(source.lastModified());
+        buffer.putInt(size);
+        buffer.putInt(k);
+        buffer.putInt(problem.getDistanceFunction().ordinal());
+        buffer.asIntBuffer().put(problem.getIds());
+        buffer.position(buffer.position() + 4 * size);
+        buffer.asDoubleBuffer().put(problem.getXs());
+        buffer.position(buffer.position() + 8 * size);
+        buffer.asDoubleBuffer().put(problem.getYs());
+        buffer.position(buffer.position() + 8 * size);
+        if(k > 0) {
+            buffer.asIntBuffer().put(candidates.getCounts());
+            buffer.position(buffer.position() + 4 * size);
+            buffer.asIntBuffer().put(candidates.getNeighbors());
+            buffer.position(buffer.position() + 4 * size * k);
+        }
+        buffer.flip();
+
+        File temporary = File.createTempFile(sidecar.getName(), ".tmp", sidecar.getAbsoluteFile().getParentFile());
+        try {
+            try(FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.WRITE)) {
+                while(buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temporary.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            temporary.delete();
+        }
+    }
+
+    /**
+     * This function computes the size of a sidecar
+     * @param int the number of cities
+     * @param int the number of candidates per city, 0 without candidates
+     * @return long the size in bytes
+     */
+    private static long sizeOf(int size, int k) {
+        long bytes = HEADER_SIZE + 4L * size + 16L * size;
+        if(k > 0) {
+            bytes += 4L * size + 4L * size * k;
+        }
+        return bytes;
+    }
+
+}
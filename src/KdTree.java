@@ -0,0 +1,336 @@
+/**
+ * This class is a 2D k-d tree over the coordinates of the cities, it allows
+ * to find the nearest neighbors of a city without scanning all of them.
+ *
+ * The tree is implicit: the cities are permuted so that every range of the
+ * array is a node, and the median of the range is the splitting city.
+ */
+public class KdTree {
+    /*
+     * Instance variables
+     */
+
+    // Ranges with this many cities or less are scanned linearly
+    private static final int LEAF_SIZE = 8;
+
+    // The x coordinates of the cities
+    private double[] xs;
+
+    // The y coordinates of the cities
+    private double[] ys;
+
+    // The cities, permuted so that every range is a node of the tree
+    private int[] cities;
+
+    // Whether the node whose median sits at this position splits by x (otherwise by y)
+    private boolean[] splitX;
+
+    // The position of every city in the permutation
+    private int[] positions;
+
+    // Whether every city has been removed from the tree
+    private boolean[] removed;
+
+    // The number of cities not removed in the node whose median sits at this position
+    private int[] alive;
+
+    // The cities found by the current query, as a max-heap on the distance
+    private int[] heapCities;
+
+    // The squared distances of the cities in the heap
+    private double[] heapDistances;
+
+    // The number of cities in the heap
+    private int heapSize;
+
+    // The number of neighbors wanted by the current query
+    private int wanted;
+
+    /**
+     * Constructor that builds the tree over the coordinates in O(n log n)
+     * @param double[] the x coordinates of the cities
+     * @param double[] the y coordinates of the cities
+     */
+    public KdTree(double[] xs, double[] ys) {
+        this.xs = xs;
+        this.ys = ys;
+        int size = xs.length;
+        this.cities = new int[size];
+        for(int i = 0; i < size; ++i) {
+            this.cities[i] = i;
+        }
+        this.splitX = new boolean[size];
+        this.heapCities = new int[0];
+        this.heapDistances = new double[0];
+        build(0, size);
+
+        this.positions = new int[size];
+        this.alive = new int[size];
+        this.removed = new boolean[size];
+        for(int i = 0; i < size; ++i) {
+            this.positions[cities[i]] = i;
+        }
+        count(0, size);
+    }
+
+    /**
+     * This function initializes the number of cities in every node
+     * @param int the first position of the range
+     * @param int the position after the last one of the range
+     * @return void
+     */
+    private void count(int lo, int hi) {
+        if(hi - lo <= LEAF_SIZE) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        alive[mid] = hi - lo;
+        count(lo, mid);
+        count(mid + 1, hi);
+    }
+
+    /**
+     * This function removes a city from the tree, the queries will not return it anymore
+     * @param int the city to remove
+     * @return void
+     */
+    public void remove(int city) {
+        if(removed[city]) {
+            return;
+        }
+        removed[city] = true;
+
+        // Walk down to the node holding the city, updating the counts
+        int p = positions[city];
+        int lo = 0, hi = cities.length;
+        while(hi - lo > LEAF_SIZE) {
+            int mid = (lo + hi) >>> 1;
+            alive[mid]--;
+            if(p == mid) {
+                break;
+            } else if(p < mid) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+    }
+
+    /**
+     * This function builds the node for a range, splitting it by the median
+     * of the widest dimension
+     * @param int the first position of the range
+     * @param int the position after the last one of the range
+     * @return void
+     */
+    private void build(int lo, int hi) {
+        if(hi - lo <= LEAF_SIZE) {
+            return;
+        }
+
+        double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for(int i = lo; i < hi; ++i) {
+            int c = cities[i];
+            minX = Math.min(minX, xs[c]);
+            maxX = Math.max(maxX, xs[c]);
+            minY = Math.min(minY, ys[c]);
+            maxY = Math.max(maxY, ys[c]);
+        }
+        boolean byX = maxX - minX >= maxY - minY;
+
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, byX);
+        splitX[mid] = byX;
+
+        build(lo, mid);
+        build(mid + 1, hi);
+    }
+
+    /**
+     * This function rearranges a range so the city at position k is the one
+     * that would be there if the range was sorted (quickselect)
+     * @param int the first position of the range
+     * @param int the last position of the range (inclusive)
+     * @param int the position to select
+     * @param boolean true to compare by x, false to compare by y
+     * @return void
+     */
+    private void select(int lo, int hi, int k, boolean byX) {
+        double[] key = byX? xs: ys;
+        while(hi > lo) {
+            // Median of three as pivot
+            int mid = (lo + hi) >>> 1;
+            if(key[cities[mid]] < key[cities[lo]]) swap(mid, lo);
+            if(key[cities[hi]] < key[cities[lo]]) swap(hi, lo);
+            if(key[cities[hi]] < key[cities[mid]]) swap(hi, mid);
+            double pivot = key[cities[mid]];
+
+            int i = lo, j = hi;
+            while(i <= j) {
+                while(key[cities[i]] < pivot) i++;
+                while(key[cities[j]] > pivot) j--;
+                if(i <= j) {
+                    swap(i, j);
+                    i++;
+                    j--;
+                }
+            }
+
+            if(k <= j) {
+                hi = j;
+            } else if(k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Simple swap of two positions of the permutation
+     * @param int the first position
+     * @param int the second position
+     * @return void
+     */
+    private void swap(int i, int j) {
+        int a = cities[i];
+        cities[i] = cities[j];
+        cities[j] = a;
+    }
+
+    /**
+     * This function finds the nearest neighbors of a city, sorted by distance.
+     * The city itself and the removed cities are not included in the result
+     * @param int the city whose neighbors are wanted
+     * @param int the maximum number of neighbors wanted
+     * @param int[] the array where the neighbors are written
+     * @return int the number of neighbors found
+     */
+    public int nearest(int city, int k, int[] result) {
+        if(heapCities.length < k) {
+            heapCities = new int[k];
+            heapDistances = new double[k];
+        }
+        heapSize = 0;
+        wanted = k;
+        if(k > 0) {
+            search(0, cities.length, city);
+        }
+
+        // Pop the heap from the farthest to the nearest
+        int found = heapSize;
+        while(heapSize > 0) {
+            result[heapSize - 1] = heapCities[0];
+            pop();
+        }
+        return found;
+    }
+
+    /**
+     * This function visits a node of the tree, pruning the ranges that can not
+     * contain a neighbor closer than the ones already found
+     * @param int the first position of the range
+     * @param int the position after the last one of the range
+     * @param int the city whose neighbors are wanted
+     * @return void
+     */
+    private void search(int lo, int hi, int city) {
+        if(hi <= lo) {
+            return;
+        }
+        if(hi - lo <= LEAF_SIZE) {
+            for(int i = lo; i < hi; ++i) {
+                offer(cities[i], city);
+            }
+            return;
+        }
+
+        int mid = (lo + hi) >>> 1;
+        if(alive[mid] == 0) {
+            return; // Every city of this node has been removed
+        }
+        int median = cities[mid];
+        offer(median, city);
+
+        double diff = splitX[mid]? xs[city] - xs[median]: ys[city] - ys[median];
+        if(diff < 0) {
+            search(lo, mid, city);
+            if(heapSize < wanted || diff * diff < heapDistances[0]) {
+                search(mid + 1, hi, city);
+            }
+        } else {
+            search(mid + 1, hi, city);
+            if(heapSize < wanted || diff * diff < heapDistances[0]) {
+                search(lo, mid, city);
+            }
+        }
+    }
+
+    /**
+     * This function adds a city to the heap when it is closer than the farthest one found
+     * @param int the city to offer
+     * @param int the city whose neighbors are wanted
+     * @return void
+     */
+    private void offer(int c, int city) {
+        if(c == city || removed[c]) {
+            return;
+        }
+        double dx = xs[c] - xs[city];
+        double dy = ys[c] - ys[city];
+        double d = dx * dx + dy * dy;
+
+        if(heapSize < wanted) {
+            // Sift up
+            int i = heapSize++;
+            while(i > 0) {
+                int parent = (i - 1) >>> 1;
+                if(heapDistances[parent] >= d) break;
+                heapCities[i] = heapCities[parent];
+                heapDistances[i] = heapDistances[parent];
+                i = parent;
+            }
+            heapCities[i] = c;
+            heapDistances[i] = d;
+        } else if(d < heapDistances[0]) {
+            siftDown(c, d);
+        }
+    }
+
+    /**
+     * This function removes the farthest city of the heap
+     * @param None
+     * @return void
+     */
+    private void pop() {
+        heapSize--;
+        if(heapSize > 0) {
+            siftDown(heapCities[heapSize], heapDistances[heapSize]);
+        }
+    }
+
+    /**
+     * This function places a city at the root of the heap and sifts it down
+     * @param int the city
+     * @param double its squared distance
+     * @return void
+     */
+    private void siftDown(int c, double d) {
+        int i = 0;
+        while(true) {
+            int child = 2 * i + 1;
+            if(child >= heapSize) break;
+            if(child + 1 < heapSize && heapDistances[child + 1] > heapDistances[child]) {
+                child++;
+            }
+            if(heapDistances[child] <= d) break;
+            heapCities[i] = heapCities[child];
+            heapDistances[i] = heapDistances[child];
+            i = child;
+        }
+        heapCities[i] = c;
+        heapDistances[i] = d;
+    }
+
+}
@@ -6,34 +6,447 @@ import java.util.Random;
 public class LinKernighan {
     //The instance variables definitions
 
-    // The ids of all the cities (sorted)
-    private ArrayList<Integer> ids;
-
-    // The coordinates of all the cities
-    private ArrayList<Point> coordinates;
+    // The data of the instance, shared with any other solver of the same instance
+    private Problem problem;
 
     // The number of cities of this instance
     private int size;
     
     // The current tour solution
-    public int[] tour;
+    private Tour tour;
+
+    // Whether the tour is cross-checked against the array reference after every update
+    private boolean debug;
+
+    // The reference tour used to cross-check the moves in debug mode
+    private ArrayTour reference;
+
+    // The provider of the distances between cities
+    private DistanceProvider distances;
+
+    // The candidate neighbors of every city
+    private CandidateSet candidates;
+
+    // The random generator used for the random starting tour
+    private Random random;
+
+    // The time (in ms since the epoch) at which the algorithm stops, 0 for no limit
+    private long deadline;
+
+    // Whether the search has been cancelled by another thread
+    private volatile boolean cancelled;
+
+    // The t's of the move being searched (starting at 1 to be consistent with the paper)
+    private int[] tIndex;
+
+    // The number of entries used in tIndex (the last t is at tLength - 1)
+    private int tLength;
+
+    // The edges broken by the move being searched, the x's
+    private EdgeSet xEdges;
+
+    // The edges added by the move being searched, the y's
+    private EdgeSet yEdges;
+
+    // The running gain G_i of the move being searched: the sum of |xj| - |yj| so far
+    private double gain;
+
+    // The length of the current tour, updated with the gain of every committed move
+    private double length;
+
+    // The cities waiting to be used as t1, in a circular FIFO
+    private int[] queue;
+
+    // The position of the first city in the queue
+    private int queueHead;
+
+    // The number of cities in the queue
+    private int queueCount;
+
+    // Whether every city is in the queue (a city that is not has its don't-look bit set)
+    private boolean[] active;
+
+    // Whether the last pass started from every city and found nothing, reset by every move
+    private boolean optimal;
+
+    // The 2-opt moves applied since the last accepted kick, four cities each, to undo a rejected kick
+    private int[] journal;
+
+    // The number of entries used in the journal
+    private int journalLength;
+
+    // Whether the committed moves are recorded in the journal
+    private boolean journaling;
+
+    // The number of kicks tried by the iterated algorithm
+    private int kicks;
+
+    // The number of kicks that led to a better tour
+    private int acceptedKicks;
+
+    // The number of passes over the active cities done by runAlgorithm
+    private int passes;
+
+    // The number of improving moves applied to the tour
+    private int moves;
 
-    // The distance table
-    private double[][] distanceTable; 
+    // Whether the search counters and the Flight Recorder events are on
+    private boolean counting;
+
+    // The number of searches started from a city
+    private long improveCalls;
+
+    // The number of moves tried
+    private long startCalls;
+
+    // The sum of the depths reached by the moves, in number of exchanged edges
+    private long depthSum;
+
+    // The deepest move tried, in number of exchanged edges
+    private long maxDepth;
+
+    // The number of candidates looked at when choosing the next y
+    private long candidatesExamined;
+
+    // The number of times no valid t could be chosen to close the tour
+    private long rejectedSelections;
+
+    // The sum of the gains of the improving moves
+    private double totalGain;
+
+    // The last snapshot of the counters, read by the threads that monitor the search
+    private volatile SearchCounters published;
+
+    // Run on the thread of the search every PUBLISH_INTERVAL searches, between two moves, null for none
+    private Runnable progress;
+
+    // The counters are published and the progress hook is run every this many searches (a power of 2)
+    public static final int PUBLISH_INTERVAL = 1024;
+
+    // The maximum number of cities spanned by the two segments of a kick
+    public static final int KICK_SPAN = 50;
+
+    // The minimum gain for a move to be committed, so rounding noise can not make moves cycle
+    private static final double EPSILON = 1e-7;
+
+    // The time it took to build the starting tour (in ms)
+    private long constructionTime;
+
+    // The length of the starting tour
+    private double initialLength;
+
+    // The default way of building the starting tour
+    public static final InitialTour DEFAULT_INITIAL_TOUR = InitialTour.GREEDY;
+
+    // The default number of candidate neighbors per city
+    public static final int DEFAULT_CANDIDATES = 10;
+
+    // Up to this number of cities the tour is kept in a plain array, above it in a two-level list
+    public static final int ARRAY_TOUR_LIMIT = 1000;
 
     /**
-     * Constructor that creates an instance of the Lin-Kerninghan problem without
-     * the optimizations. (Basically the tour it has is the drunken sailor)
+     * Constructor that creates an instance of the Lin-Kerninghan problem with the
+     * default number of candidates, starting from a tour built by DEFAULT_INITIAL_TOUR
+     * (the greedy edge matching)
      * @param ArrayList<Point> the coordinates of all the cities
      * @param ArrayList<Integer> the id of all the cities
      */ 
     public LinKernighan(ArrayList<Point> coordinates, ArrayList<Integer> ids) { 
-        this.ids = ids;
-        this.coordinates = coordinates;
-        this.size = ids.size();
-        this.tour = createRandomTour();
-        this.distanceTable = initDistanceTable();
-        
+        this(coordinates, ids, DEFAULT_CANDIDATES);
+    }
+
+    /**
+     * Constructor that also sets the number of candidate neighbors per city
+     * @param ArrayList<Point> the coordinates of all the cities
+     * @param ArrayList<Integer> the id of all the cities
+     * @param int the number of nearest neighbors the algorithm looks at for each city
+     */ 
+    public LinKernighan(ArrayList<Point> coordinates, ArrayList<Integer> ids, int k) { 
+        this(coordinates, ids, k, DEFAULT_INITIAL_TOUR);
+    }
+
+    /**
+     * Constructor that also sets how the starting tour is built
+     * @param ArrayList<Point> the coordinates of all the cities
+     * @param ArrayList<Integer> the id of all the cities
+     * @param int the number of nearest neighbors the algorithm looks at for each city
+     * @param InitialTour the construction heuristic for the starting tour
+     */ 
+    public LinKernighan(ArrayList<Point> coordinates, ArrayList<Integer> ids, int k, InitialTour initial) { 
+        this(new Problem(coordinates, ids, k), initial, new Random().nextLong());
+    }
+
+    /**
+     * Constructor that solves an instance that may be shared with other solvers
+     * @param Problem the data of the instance
+     * @param InitialTour the construction heuristic for the starting tour
+     * @param long the seed of the random generator of this solver
+     */ 
+    public LinKernighan(Problem problem, InitialTour initial, long seed) { 
+        this.problem = problem;
+        this.size = problem.size();
+        this.candidates = problem.getCandidates();
+        this.distances = problem.createDistanceProvider();
+        this.random = new Random(seed);
+        this.tIndex = new int[16];
+        this.xEdges = new EdgeSet(16);
+        this.yEdges = new EdgeSet(16);
+        this.journal = new int[64];
+        this.queue = new int[size];
+        this.active = new boolean[size];
+
+        long start = System.currentTimeMillis();
+        int[] order = createInitialTour(initial);
+        this.constructionTime = System.currentTimeMillis() - start;
+
+        setTour(order, null);
+        this.initialLength = this.length;
+        this.counting = true;
+        publishCounters();
+    }
+
+    /**
+     * Constructor that starts from a given tour instead of building one, only the
+     * given cities are active so the search stays around them at first
+     * @param Problem the data of the instance
+     * @param int[] the cities in the order they are visited
+     * @param int[] the cities to start the search from, null for all of them
+     * @param long the seed of the random generator of this solver
+     */ 
+    public LinKernighan(Problem problem, int[] order, int[] activeCities, long seed) { 
+        this.problem = problem;
+        this.size = problem.size();
+        this.candidates = problem.getCandidates();
+        this.distances = problem.createDistanceProvider();
+        this.random = new Random(seed);
+        this.tIndex = new int[16];
+        this.xEdges = new EdgeSet(16);
+        this.yEdges = new EdgeSet(16);
+        this.journal = new int[64];
+        this.queue = new int[size];
+        this.active = new boolean[size];
+
+        setTour(order, activeCities);
+        this.initialLength = this.length;
+        this.counting = true;
+        publishCounters();
+    }
+
+    /**
+     * This function builds the starting tour with the chosen heuristic
+     * @param InitialTour the construction heuristic
+     * @return int[] the cities in the order they are visited
+     */
+    private int[] createInitialTour(InitialTour initial) {
+        if(initial == InitialTour.RANDOM) {
+            return createRandomTour();
+        }
+        // Taken once, the instance may return copies
+        double[] xs = problem.getXs();
+        double[] ys = problem.getYs();
+        switch(initial) {
+            case NEAREST_NEIGHBOR:
+                return TourConstruction.nearestNeighbor(xs, ys);
+            case GREEDY:
+                return TourConstruction.greedy(xs, ys, this.candidates, this.distances);
+            case SPACE_FILLING_CURVE:
+                return TourConstruction.spaceFillingCurve(xs, ys);
+            default:
+                return createRandomTour();
+        }
+    }
+
+    /**
+     * Getter that returns the time it took to build the starting tour
+     * @param None
+     * @return long the time in ms
+     */
+    public long getConstructionTime() {
+        return this.constructionTime;
+    }
+
+    /**
+     * Getter that returns the length of the starting tour
+     * @param None
+     * @return double the length of the tour
+     */
+    public double getInitialLength() {
+        return this.initialLength;
+    }
+
+    /**
+     * Getter that returns the time it took to build the candidate lists, or to read them
+     * @param None
+     * @return long the time in ms
+     */
+    public long getCandidateBuildTime() {
+        return this.problem.getCandidateBuildTime();
+    }
+
+    /**
+     * Getter that tells whether the candidate lists were read from a sidecar
+     * @param None
+     * @return boolean true if getCandidateBuildTime is the time it took to read them
+     */
+    public boolean areCandidatesCached() {
+        return this.problem.areCandidatesCached();
+    }
+
+    /**
+     * This function sets a time after which the algorithm stops, leaving the best tour found so far
+     * @param long the deadline in ms since the epoch, 0 for no limit
+     * @return void
+     */
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * This function asks the algorithm to stop as soon as it can, leaving the best tour
+     * found so far. It can be called from any thread
+     * @param None
+     * @return void
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * This function checks whether the deadline has passed or the search has been cancelled
+     * @param None
+     * @return boolean true if the algorithm has to stop
+     */
+    public boolean isExpired() {
+        return cancelled || (deadline != 0 && System.currentTimeMillis() >= deadline);
+    }
+
+    /**
+     * This function checks whether the tour is a local optimum, that is a pass starting
+     * from every city has found nothing to improve since the last move
+     * @param None
+     * @return boolean true if there is nothing left to improve
+     */
+    public boolean isFinished() {
+        return optimal && queueCount == 0;
+    }
+
+    /**
+     * This function replaces the current tour, choosing its representation by the size of the instance
+     * @param int[] the cities in the order they are visited
+     * @param int[] the cities that become active, null for all of them
+     * @return void
+     */
+    private void setTour(int[] order, int[] activeCities) {
+        this.tour = problem.createTour(order);
+        if(debug) {
+            this.reference = new ArrayTour(order);
+        }
+        this.length = getDistance();
+        if(activeCities == null) {
+            activeCities = order;
+        }
+        for(int city: activeCities) {
+            activate(city);
+        }
+    }
+
+    /**
+     * This function clears the don't-look bit of a city and adds it to the queue
+     * @param int the city
+     * @return void
+     */
+    public void activate(int city) {
+        if(active[city]) {
+            return;
+        }
+        active[city] = true;
+        int tail = queueHead + queueCount;
+        queue[tail >= size? tail - size: tail] = city;
+        queueCount++;
+    }
+
+    /**
+     * This function removes the first city from the queue and sets its don't-look bit
+     * @param None
+     * @return int the city
+     */
+    private int poll() {
+        int city = queue[queueHead];
+        if(++queueHead == size) queueHead = 0;
+        queueCount--;
+        active[city] = false;
+        return city;
+    }
+
+    /**
+     * This function removes the first city from the queue, for a search driven from
+     * outside this class (ParallelImprover)
+     * @param None
+     * @return int the city, -1 if no city is active
+     */
+    public int pollActive() {
+        return queueCount > 0? poll(): -1;
+    }
+
+    /**
+     * Getter that returns the number of cities in the queue
+     * @param None
+     * @return int the number of active cities
+     */
+    public int getActiveCount() {
+        return this.queueCount;
+    }
+
+    /**
+     * Getter that returns the length of the current tour as tracked from the gains of the moves
+     * @param None
+     * @return double the length of the tour
+     */
+    public double getLength() {
+        return this.length;
+    }
+
+    /**
+     * Getter that returns a copy of the current tour
+     * @param None
+     * @return int[] the cities in the order they are visited
+     */
+    public int[] getTour() {
+        return this.tour.toArray();
+    }
+
+    /**
+     * This function enables or disables the cross-check of every move against
+     * the plain array implementation
+     * @param boolean true to check the tour after every update
+     * @return void
+     */
+    public void setDebug(boolean debug) {
+        this.debug = debug;
+        this.reference = debug? new ArrayTour(tour.toArray()): null;
+    }
+
+    /**
+     * This function verifies that the tour has the same edges as the reference tour
+     * @param None
+     * @return void
+     * @throws IllegalStateException when both are out of sync
+     */
+    public void checkTour() {
+        if(tour instanceof ArrayTour) {
+            ((ArrayTour) tour).checkPositions();
+        }
+        for(int city = 0; city < size; ++city) {
+            int next = tour.next(city);
+            int prev = tour.prev(city);
+            if(tour.prev(next) != city) {
+                throw new IllegalStateException("The tour is broken at city " + city);
+            }
+            if(reference != null && !(next == reference.next(city) && prev == reference.prev(city))
+                    && !(next == reference.prev(city) && prev == reference.next(city))) {
+                throw new IllegalStateException("The tour differs from the reference at city " + city);
+            }
+        }
     }
 
     /**
@@ -48,8 +461,6 @@ public class LinKernighan {
     		array[i] = i;
     	}
     	
-    	Random random = new Random();
-    	
     	for (int i = 0; i < size; ++i) {
     		int index = random.nextInt(i + 1);
     	    // Simple swap
@@ -62,304 +473,675 @@ public class LinKernighan {
     }
 
     /**
-     * This functions creates a table with the distances of all the cities
+     * This function returns the current tour distance
+     * @param Nothing
+     * @return double the distance of the tour
+     */
+    public double getDistance() {
+        double sum = 0;
+
+        int a = 0;
+        for(int i = 0; i < this.size; i++) {
+            int b = tour.next(a);    // <->
+            sum += this.distances.get(a, b);
+            a = b;
+        }
+
+        return sum;
+    }
+
+    /**
+     * This function is the crown jewel of this class, it tries to optimize
+     * the current tour until it is a local optimum or the deadline passes
      * @param None
-     * @return double[][] a two dimensional array with all the distances
+     * @return void
      */
-    private double[][] initDistanceTable() {
-        double[][] res = new double[this.size][this.size];
+    public void runAlgorithm() {
+        while(!isFinished() && !isExpired()) {
+        	runPass();
+        }
+    }
 
-        for(int i = 0; i < this.size-1; ++i) {
-            for(int j = i + 1; j < this.size; ++j) {
-                Point p1 = this.coordinates.get(i);
-                Point p2 = this.coordinates.get(j);
+    /**
+     * This function runs passes over the active cities only, until none is left.
+     * It is cheaper than runAlgorithm but does not check the other cities again
+     * @param int the maximum number of passes
+     * @return void
+     */
+    public void runActiveCities(int maxPasses) {
+        for(int pass = 0; pass < maxPasses && queueCount > 0 && !isExpired(); ++pass) {
+        	runPass();
+        }
+    }
 
-                res[i][j] = Math.sqrt(
-                    Math.pow(p2.getX() - p1.getX(), 2) +
-                    Math.pow(p2.getY() - p1.getY(), 2) 
-                );
+    /**
+     * This function does one pass over the active cities, counting it. When no city
+     * is active, every city is activated first: this check pass finds the moves the
+     * don't-look bits have hidden (see improve()), and the tour is a local optimum
+     * when it finds none
+     * @param None
+     * @return void
+     */
+    public void runPass() {
+    	boolean check = queueCount == 0;
+    	if(check) {
+    		for(int city = 0; city < size; ++city) {
+    			activate(city);
+    		}
+    	}
+    	int activeCities = queueCount;
+    	int movesBefore = moves;
+    	double lengthBefore = length;
+    	PassEvent event = counting? new PassEvent(): null;
+    	if(event != null) {
+    		event.begin();
+    	}
+    	
+    	improve();
+    	passes++;
+    	optimal = check && moves == movesBefore && queueCount == 0;
+    	
+    	if(event != null) {
+    		event.end();
+    		if(event.shouldCommit()) {
+    			event.activeCities = activeCities;
+    			event.moves = moves - movesBefore;
+    			event.gain = lengthBefore - length;
+    			event.length = length;
+    			event.commit();
+    		}
+    		publishCounters();
+    	}
+    }
+    
+    /**
+     * This function runs the iterated Lin-Kernighan: once the tour is a local optimum,
+     * it repeatedly perturbs it with a double-bridge kick, re-optimizes only around
+     * the cities the kick touched, and keeps the result if it is better. A rejected
+     * kick is undone by replaying its moves backwards instead of copying the tour.
+     * At least one of the budgets has to be set
+     * @param int the maximum number of kicks, 0 for no limit
+     * @param long the time limit in ms from now, 0 for no limit
+     * @return void
+     */
+    public void runIteratedAlgorithm(int maxKicks, long timeLimit) {
+        if(maxKicks <= 0 && timeLimit <= 0) {
+            throw new IllegalArgumentException("The iterated algorithm needs a number of kicks or a time limit");
+        }
+        long end = timeLimit > 0? System.currentTimeMillis() + timeLimit: 0;
+        if(end != 0 && (deadline == 0 || end < deadline)) {
+            deadline = end;
+        }
 
-                res[j][i] = res[i][j];
+        runAlgorithm();
+        if(size < 8) {
+            return; // There is no room for a double bridge
+        }
+
+        journaling = true;
+        while((maxKicks <= 0 || kicks < maxKicks) && !isExpired()) {
+            double before = length;
+            journalLength = 0;
+            kick();
+            runActiveCities(Integer.MAX_VALUE);
+            kicks++;
+
+            if(length < before - EPSILON) {
+                acceptedKicks++;
+            } else {
+                undo();
+                length = before;
             }
         }
-        return res;
+        journaling = false;
     }
 
     /**
-     * This function returns the current tour distance
-     * @param Nothing
-     * @return double the distance of the tour
+     * This function applies a segment-local double bridge: it takes two consecutive
+     * segments B and C that start after a random city a and turns A B C D into A C B D.
+     * The kick is made of three 2-opt moves so it can be undone like any other move
+     * @param None
+     * @return void
      */
-    public double getDistance() {
-        double sum = 0;
+    private void kick() {
+        int span = Math.min(KICK_SPAN, size - 3);
+        int a = random.nextInt(size);
+        int i = 1 + random.nextInt(span - 1);     // B goes from 1 to i cities after a
+        int j = i + 1 + random.nextInt(span - i); // C goes from i + 1 to j cities after a
 
-        for(int i = 0; i < this.size; i++) {
-            int a = tour[i];                  // <->
-            int b = tour[(i+1)%this.size];    // <->
-            sum += this.distanceTable[a][b];
+        int b1 = tour.next(a);
+        int b2 = b1;
+        for(int n = 1; n < i; ++n) b2 = tour.next(b2);
+        int c1 = tour.next(b2);
+        int c2 = c1;
+        for(int n = i + 1; n < j; ++n) c2 = tour.next(c2);
+        int d = tour.next(c2);
+
+        length += getDistance(a, c1) + getDistance(c2, b1) + getDistance(b2, d)
+            - getDistance(a, b1) - getDistance(b2, c1) - getDistance(c2, d);
+
+        // A B C D -> A C' B' D -> A C B' D -> A C B D
+        kickMove(a, b1, d, c2);
+        kickMove(a, c2, b2, c1);
+        kickMove(c2, b2, d, b1);
+
+        activate(a);
+        activate(b1);
+        activate(b2);
+        activate(c1);
+        activate(c2);
+        activate(d);
+        if(debug) {
+            resetReference();
         }
+    }
 
-        return sum;
+    /**
+     * This function applies one of the 2-opt moves of a kick and records it
+     * @param a the first endpoint of the first edge
+     * @param b the second endpoint of the first edge
+     * @param c the first endpoint of the second edge
+     * @param d the second endpoint of the second edge
+     * @return void
+     */
+    private void kickMove(int a, int b, int c, int d) {
+    	make2OptMove(a, b, c, d);
+    	record(a, b, c, d);
     }
 
     /**
-     * This function is the crown jewel of this class, it tries to optimize
-     * the current tour
+     * This function appends a 2-opt move to the journal
+     * @param a the first endpoint of the first edge
+     * @param b the second endpoint of the first edge
+     * @param c the first endpoint of the second edge
+     * @param d the second endpoint of the second edge
+     * @return void
+     */
+    private void record(int a, int b, int c, int d) {
+    	if(journalLength + 4 > journal.length) {
+    		journal = Arrays.copyOf(journal, 2 * journal.length);
+    	}
+    	journal[journalLength++] = a;
+    	journal[journalLength++] = b;
+    	journal[journalLength++] = c;
+    	journal[journalLength++] = d;
+    }
+
+    /**
+     * This function undoes the moves in the journal, from the last one to the first one,
+     * and empties the queue since the cities it holds refer to the discarded tour
      * @param None
      * @return void
      */
-    public void runAlgorithm() {
-        double oldDistance = 0;
-        double newDistance = getDistance();
-        
-        do {
-        	oldDistance = newDistance;
-        	improve();
-        	newDistance = getDistance();
-        } while(newDistance < oldDistance);
+    private void undo() {
+    	for(int i = journalLength - 4; i >= 0; i -= 4) {
+    		make2OptMove(journal[i], journal[i+3], journal[i+2], journal[i+1]);
+    	}
+    	journalLength = 0;
+    	while(queueCount > 0) {
+    		poll();
+    	}
+    	if(debug) {
+    		resetReference();
+    	}
+    }
+
+    /**
+     * This function takes the current tour as the new reference of the debug mode,
+     * after checking its structure
+     * @param None
+     * @return void
+     */
+    private void resetReference() {
+    	reference = null;
+    	checkTour();
+    	reference = new ArrayTour(tour.toArray());
+    }
+
+    /**
+     * Getter that returns the number of passes over the active cities
+     * @param None
+     * @return int the number of passes
+     */
+    public int getPasses() {
+    	return this.passes;
+    }
+
+    /**
+     * Getter that returns the number of improving moves applied to the tour, the kicks excluded
+     * @param None
+     * @return int the number of moves
+     */
+    public int getMoves() {
+    	return this.moves;
+    }
+
+    /**
+     * This function turns the search counters and the Flight Recorder events on or off.
+     * They are on by default, their cost is a few increments per move
+     * @param boolean true to count
+     * @return void
+     */
+    public void setCounting(boolean counting) {
+    	this.counting = counting;
+    }
+
+    /**
+     * This function returns the last snapshot of the counters. It can be called from
+     * any thread while the search runs: the snapshot is renewed every PUBLISH_INTERVAL
+     * searches and after every pass
+     * @param None
+     * @return SearchCounters the counters
+     */
+    public SearchCounters getCounters() {
+    	return this.published;
+    }
+
+    /**
+     * This function sets a hook run every PUBLISH_INTERVAL searches, in the middle of
+     * the passes. It runs on the thread of the search between two moves, so it can read
+     * the tour, and it should return quickly
+     * @param Runnable the hook, null for none
+     * @return void
+     */
+    public void setProgressHook(Runnable progress) {
+    	this.progress = progress;
+    }
+
+    /**
+     * This function takes a snapshot of the counters for the threads that monitor the search
+     * @param None
+     * @return void
+     */
+    private void publishCounters() {
+    	this.published = new SearchCounters(passes, improveCalls, startCalls, depthSum, maxDepth,
+    		candidatesExamined, rejectedSelections, moves, totalGain, length);
+    }
+
+    /**
+     * Getter that returns the number of kicks tried by the iterated algorithm
+     * @param None
+     * @return int the number of kicks
+     */
+    public int getKicks() {
+    	return this.kicks;
+    }
+
+    /**
+     * Getter that returns the number of kicks that led to a better tour
+     * @param None
+     * @return int the number of accepted kicks
+     */
+    public int getAcceptedKicks() {
+    	return this.acceptedKicks;
     }
     
     /**
-     * This function tries to improve the tour
+     * This function does a pass over the cities that are active when it starts.
+     * A city whose search fails keeps its don't-look bit until one of its tour
+     * edges changes. This is a heuristic: the search from a city also depends
+     * on the tour edges at t3, t4, ..., which can be anywhere in the tour, so
+     * a move from a city with its bit set may appear after other moves. The
+     * check passes of runPass find those moves
      * @param None
      * @return void
      */
     public void improve() {
-    	//int i = 0;
-    	for(int i = 0; i < size; ++i) {
-    		improve(i);
+    	for(int n = queueCount; n > 0 && queueCount > 0 && !isExpired(); --n) {
+    		improve(poll());
     	}
     }
     
     /**
      * This functions tries to improve by stating from a particular node
-     * @param x the reference to the city to start with.
+     * @param x the city to start with.
      * @return void
      */
     public void improve(int x){
+    	if((counting || progress != null) && (++improveCalls & (PUBLISH_INTERVAL - 1)) == 0) {
+    		if(counting) {
+    			publishCounters();
+    		}
+    		if(progress != null) {
+    			progress.run();
+    		}
+    	}
     	improve(x, false);
     }
     
     /**
      * This functions attempts to improve the tour by stating from a particular node
-     * @param t1 the reference to the city to start with.
+     * @param t1 the city to start with.
+     * @param previous true to take the previous city in the tour as t2, false for the next one
      * @return void
      */
     public void improve(int t1, boolean previous) {
-    	int t2 = previous? getPreviousIdx(t1): getNextIdx(t1);
-    	int t3 = getNearestNeighbor(t2);
+    	int t2 = previous? tour.prev(t1): tour.next(t1);
     	
-    	if(t3 != -1 && getDistance(t2, t3) < getDistance(t1, t2)) { // Implementing the gain criteria
-    		startAlgorithm(t1,t2,t3);
-    	} else if(!previous) {
+    	// Step 6 from the paper: try the alternatives for y1 in increasing length
+    	for(int c = 0; c < candidates.size(t2); ++c) {
+    		int t3 = candidates.get(t2, c);
+    		if(getDistance(t2, t3) >= getDistance(t1, t2)) {
+    			break; // Implementing the gain criteria
+    		}
+    		if(t3 != t1 && startAlgorithm(t1,t2,t3)) {
+    			return;
+    		}
+    	}
+    	if(!previous) {
     		improve(t1, true);
     	}
     }
     
     /**
-     * This function returns the previous index for the tour, this typically should be x-1
-     *  but if x is zero, well, it is the last index.
-     *  @param x the index of the node
-     *  @return the previous index
+     * This function searches for an improving move from a city, as improve(int) does,
+     * and returns the 2-opt steps of the move it has applied, so another copy of the
+     * tour can replay them (see applySteps)
+     * @param int the city to start with
+     * @return int[] the steps, 4 cities each, null if no move has been found
+     */
+    public int[] improveAndRecord(int t1) {
+    	journaling = true;
+    	journalLength = 0;
+    	improve(t1);
+    	journaling = false;
+    	return journalLength > 0? Arrays.copyOf(journal, journalLength): null;
+    }
+    
+    /**
+     * This function applies 2-opt steps recorded on another copy of the tour. A step
+     * fails when one of the edges it breaks is no longer in the tour; the steps
+     * already applied are then undone, so the tour is left as it was
+     * @param int[] the steps, 4 cities each
+     * @param int the index of the first city of the first step
+     * @param int the index after the last city of the last step
+     * @return boolean true if all the steps have been applied
      */
-    public int getPreviousIdx(int index) {
-    	return index == 0? size-1: index-1;
+    public boolean applySteps(int[] steps, int from, int to) {
+    	for(int i = from; i < to; i += 4) {
+    		if(!make2OptMove(steps[i], steps[i+1], steps[i+2], steps[i+3])) {
+    			for(int j = i - 4; j >= from; j -= 4) {
+    				make2OptMove(steps[j], steps[j+3], steps[j+2], steps[j+1]);
+    			}
+    			return false;
+    		}
+    	}
+    	length -= stepsGain(steps, from, to);
+    	if(debug) {
+    		resetReference();
+    	}
+    	return true;
+    }
+    
+    /**
+     * This function undoes 2-opt steps applied to the tour, from the last one to the first one
+     * @param int[] the steps, 4 cities each
+     * @return void
+     */
+    public void undoSteps(int[] steps) {
+    	for(int i = steps.length - 4; i >= 0; i -= 4) {
+    		make2OptMove(steps[i], steps[i+3], steps[i+2], steps[i+1]);
+    	}
+    	length += stepsGain(steps, 0, steps.length);
+    	if(debug) {
+    		resetReference();
+    	}
     }
     
     /**
-     * This function returns the next index for the tour, this typically should be x+1
-     *  but if x is the last index it should wrap to zero
-     *  @param x the index of the node
-     *  @return the next index
+     * This function computes by how much 2-opt steps shorten the tour: every step
+     * (a, b, c, d) replaces the edges (a, b) and (c, d) by (b, c) and (d, a)
+     * @param int[] the steps, 4 cities each
+     * @param int the index of the first city of the first step
+     * @param int the index after the last city of the last step
+     * @return double the gain of the steps
      */
-    public int getNextIdx(int index) {
-    	return (index+1)%size;
+    private double stepsGain(int[] steps, int from, int to) {
+    	double total = 0;
+    	for(int i = from; i < to; i += 4) {
+    		total += getDistance(steps[i], steps[i+1]) + getDistance(steps[i+2], steps[i+3])
+    			- getDistance(steps[i+1], steps[i+2]) - getDistance(steps[i+3], steps[i]);
+    	}
+    	return total;
     }
     
     /**
      * This function returns the nearest neighbor for an specific node
-     * @param the index of the node
-     * @return the index of the nearest node
-     */
-    public int getNearestNeighbor(int index) {
-    	double minDistance = Double.MAX_VALUE;
-    	int nearestNode = -1;
-		int actualNode = tour[index];
-    	for(int i = 0; i < size; ++i) {
-    		if(i != actualNode) {
-    			double distance = this.distanceTable[i][actualNode];
-    			if(distance < minDistance) {
-    				nearestNode = getIndex(i);
-    				minDistance = distance; 
-    			}
-    		}
+     * @param the node
+     * @return the nearest node, -1 if there is none
+     */
+    public int getNearestNeighbor(int node) {
+    	if(candidates.size(node) == 0) {
+    		return -1;
     	}
-    	return nearestNode;
+    	// The candidates are sorted, so the first one is the nearest
+    	return candidates.get(node, 0);
     }
     
     /**
-     * This functions retrieves the distance between two nodes given its indexes
-     * @param int index of the first node
-     * @param int index of the second node
+     * This functions retrieves the distance between two nodes
+     * @param int the first node
+     * @param int the second node
      * @return double the distance from node 1 to node 2
      */
     public double getDistance(int n1, int n2) {
-    	return distanceTable[tour[n1]][tour[n2]];
+    	return distances.get(n1, n2);
     }
     
     /**
      * This function is actually the step four from the lin-kernighan's original paper
-     * @param t1 the index that references the chosen t1 in the tour
-     * @param t2 the index that references the chosen t2 in the tour
-     * @param t3 the index that references the chosen t3 in the tour
-     * @return void
+     * @param t1 the chosen t1 city
+     * @param t2 the chosen t2 city, a neighbor of t1 in the tour
+     * @param t3 the chosen t3 city
+     * @return boolean true if the tour has been improved
      */
-    public void startAlgorithm(int t1, int t2, int t3) {
-    	ArrayList<Integer> tIndex = new ArrayList<Integer>();
-    	tIndex.add(0, -1); // Start with the index 1 to be consistent with Lin-Kernighan Paper
-    	tIndex.add(1, t1);
-    	tIndex.add(2, t2);
-    	tIndex.add(3, t3);
-    	double initialGain = getDistance(t2, t1) - getDistance(t3, t2); // |x1| - |y1|
-    	double GStar = 0;
-    	double Gi = initialGain;
+    public boolean startAlgorithm(int t1, int t2, int t3) {
+    	tIndex[0] = -1; // Start with the index 1 to be consistent with Lin-Kernighan Paper
+    	tIndex[1] = t1;
+    	tLength = 2;
+    	xEdges.clear();
+    	yEdges.clear();
+    	addT(t2);
+    	addT(t3);
+    	gain = getDistance(t2, t1) - getDistance(t3, t2); // |x1| - |y1|
+    	if(counting) {
+    		startCalls++;
+    	}
+    	double GStar = EPSILON;
     	int k = 3;
+    	int applied = 3; // The position of the last t whose step has been applied to the tour
     	for(int i = 4;; i+=2) {
-    		int newT = selectNewT(tIndex);
+    		int newT = selectNewT();
     		if(newT == -1) {
     			break; // This should not happen according to the paper
     		}
-    		tIndex.add(i, newT);
-    		int tiplus1 = getNextPossibleY(tIndex);
-    		if(tiplus1 == -1) {
-    			break;
-    		}
+    		addT(newT);
+    		
+    		// Apply the step, the tour is now closed by (newT, t1)
+    		make2OptMove(t1, tIndex[i-2], tIndex[i-1], newT);
+    		applied = i;
     		
-    		   		
     		// Step 4.f from the paper
-    		Gi += getDistance(tIndex.get(tIndex.size()-2), newT);
-    		if(Gi - getDistance(newT, t1) > GStar) {
-    			GStar = Gi - getDistance(newT, t1);
+    		gain += getDistance(tIndex[i-1], newT);
+    		if(gain - getDistance(newT, t1) > GStar) {
+    			GStar = gain - getDistance(newT, t1);
     			k = i;
     		}
     		
-    		tIndex.add(tiplus1);
-    		Gi -= getDistance(newT, tiplus1);
-    		
+    		int tiplus1 = getNextPossibleY();
+    		if(tiplus1 == -1) {
+    			break;
+    		}
     		
+    		addT(tiplus1);
+    		gain -= getDistance(newT, tiplus1);
+    	}
+    	
+    	if(counting) {
+    		long depth = (tLength - 1) / 2;
+    		depthSum += depth;
+    		maxDepth = Math.max(maxDepth, depth);
     	}
-    	if(GStar > 0) {
-    		tIndex.set(k+1, tIndex.get(1));
-    		tour = getTPrime(tIndex, k); // Update the tour
+    	
+    	// Roll back the steps that go beyond the best closing (all of them if there is no gain)
+    	for(int j = applied; j > k; j -= 2) {
+    		make2OptMove(t1, tIndex[j], tIndex[j-1], tIndex[j-2]);
     	}
     	
+    	if(GStar > EPSILON) {
+    		length -= GStar;
+    		moves++;
+    		if(counting) {
+    			totalGain += GStar;
+    			MoveEvent event = new MoveEvent();
+    			if(event.shouldCommit()) {
+    				event.t1 = t1;
+    				event.depth = k / 2;
+    				event.gain = GStar;
+    				event.commit();
+    			}
+    		}
+    		
+    		// The endpoints of the changed edges are worth another look
+    		for(int i = 1; i <= k; ++i) {
+    			activate(tIndex[i]);
+    		}
+    		if(journaling) {
+    			for(int i = 4; i <= k; i += 2) {
+    				record(t1, tIndex[i-2], tIndex[i-1], tIndex[i]);
+    			}
+    		}
+    		if(debug) {
+    			checkMove(k, GStar);
+    		}
+    	}
+    	return GStar > EPSILON;
+    }
+    
+    /**
+     * This function appends a t to the move, growing the buffer when the move gets deeper than ever.
+     * The edge it forms with the previous t is an x if the new t is at an even position, a y otherwise
+     * @param t the city to append
+     * @return void
+     */
+    private void addT(int t) {
+    	if(tLength == tIndex.length) {
+    		tIndex = Arrays.copyOf(tIndex, 2 * tLength);
+    	}
+    	if(tLength % 2 == 0) {
+    		xEdges.add(tIndex[tLength - 1], t);
+    	} else {
+    		yEdges.add(tIndex[tLength - 1], t);
+    	}
+    	tIndex[tLength++] = t;
     }
     
     /**
-     * This function gets all the ys that fit the criterion for step 4
-     * @param tIndex the list of t's
-     * @return an array with all the possible y's
+     * This function gets the closest y among the candidates of the last t that fits the criterion for step 4
+     * @param None
+     * @return the chosen y, -1 if there is none
      */
-    public int getNextPossibleY(ArrayList<Integer> tIndex) {
-    	int ti = tIndex.get(tIndex.size() - 1);
-    	ArrayList<Integer> ys = new ArrayList<Integer>();
-    	for(int i = 0; i < size; ++i) {
-    		if(!isDisjunctive(tIndex, i, ti)) {
+    public int getNextPossibleY() {
+    	int ti = tIndex[tLength - 1];
+    	
+    	// The candidates are sorted by distance, so the first one that fits is the closest y
+    	for(int c = 0; c < candidates.size(ti); ++c) {
+    		int i = candidates.get(ti, c);
+    		if(!isDisjunctive(i, ti)) {
     			continue; // Disjunctive criteria
     		}
     		
-    		if(!isPositiveGain(tIndex, i)) {
+    		if(!isPositiveGain(i)) {
     			continue; // Gain criteria
     		};    
-    		if(!nextXPossible(tIndex, i)) {
+    		if(!nextXPossible(i)) {
     			continue; // Step 4.f.
     		}
-    		ys.add(i);
+    		if(counting) {
+    			candidatesExamined += c + 1;
+    		}
+    		return i;
     	}
     	
-    	// Get closest y
-    	double minDistance = Double.MAX_VALUE;
-    	int minNode = -1;
-    	for(int i: ys) {
-    		if(getDistance(ti, i) < minDistance) {
-    			minNode = i;
-    			minDistance = getDistance(ti, i); 
-    		};
+    	if(counting) {
+    		candidatesExamined += candidates.size(ti);
     	}
-    	
-    	return minNode;
+    	return -1;
     	
     }
     
     /**
      * This function implements the part e from the point 4 of the paper
-     * @param tIndex
-     * @param i
-     * @return
+     * @param i the candidate for the next t
+     * @return true if one of the tour edges of i can still be broken
      */
-    private boolean nextXPossible(ArrayList<Integer> tIndex, int i) {
-    	return isConnected(tIndex, i, getNextIdx(i)) || isConnected(tIndex, i, getPreviousIdx(i));
+    private boolean nextXPossible(int i) {
+    	return isConnected(i, tour.next(i)) || isConnected(i, tour.prev(i));
 	}
 
-	private boolean isConnected(ArrayList<Integer> tIndex, int x, int y) {
-		if(x == y) return false;
-		for(int i = 1; i < tIndex.size() -1 ; i+=2) {
-			if(tIndex.get(i) == x && tIndex.get(i + 1) == y) return false;
-			if(tIndex.get(i) == y && tIndex.get(i + 1) == x) return false;
-		}
-		return true;
+	/**
+	 * This function checks that an edge is not already in X
+	 * @param x one of the endpoints
+	 * @param y one of the endpoints
+	 * @return true if the edge has not been broken yet
+	 */
+	private boolean isConnected(int x, int y) {
+		return x != y && !xEdges.contains(x, y);
 	}
 
 	/**
-     * 
-     * @param tIndex
-     * @param i
+     * This function implements the gain criterion: G_i = sum(|xj| - |yj|) has to stay positive.
+     * The running gain already holds the sum up to the last x, so only the new y is subtracted
+     * @param ti the candidate for the next t
      * @return true if the gain would be positive 
      */
-    private boolean isPositiveGain(ArrayList<Integer> tIndex, int ti) {
-		int gain = 0;
-    	for(int i = 1; i < tIndex.size() - 2; ++i) {
-			int t1 = tIndex.get(i);
-			int t2 = tIndex.get(i+1);
-			int t3 = i == tIndex.size()-3? ti :tIndex.get(i+2);
-			
-			gain += getDistance(t2, t3) - getDistance(t1,t2); // |yi| - |xi|
-			
-			
+    private boolean isPositiveGain(int ti) {
+    	if(debug) {
+    		checkGain();
+    	}
+		return gain - getDistance(tIndex[tLength - 1], ti) > 0;
+	}
+
+	/**
+	 * This function verifies the running gain against the sum of the x's and y's of the move
+	 * @param None
+	 * @return void
+	 * @throws IllegalStateException when the running gain has drifted from the sum
+	 */
+	private void checkGain() {
+		double sum = 0;
+		for(int i = 1; i < tLength - 1; ++i) {
+			double d = getDistance(tIndex[i], tIndex[i+1]);
+			sum += i % 2 == 1? d: -d; // |xi| for odd i, |yi| for even i
+		}
+		if(Math.abs(sum - gain) > 1e-6 * Math.max(1, Math.abs(sum))) {
+			throw new IllegalStateException("The running gain is " + gain + " but the move adds up to " + sum);
 		}
-		return gain > 0;
 	}
 
 	/**
      * This function gets a new t with the characteristics described in the paper in step 4.a.
-     * @param tIndex
-     * @return
+     * The steps are applied to the tour as they are chosen, so the tour is always closed by
+     * (t2i-2, t1) and only one of the neighbors of t2i-1 results in a tour: the one given by
+     * the orientation of (t1, t2i-2). No trial tour has to be built to know it.
+     * @param None
+     * @return the new t2i, -1 if the edge it forms with t2i-1 has already been used
      */
-    public int selectNewT(ArrayList<Integer> tIndex) {
-    	int option1 = getPreviousIdx(tIndex.get(tIndex.size()-1));
-    	int option2 = getNextIdx(tIndex.get(tIndex.size()-1));
+    public int selectNewT() {
+    	int t1 = tIndex[1];
+    	int last = tIndex[tLength-2];
+    	int ti = tIndex[tLength-1];
+    	int newT = tour.next(t1) == last? tour.prev(ti): tour.next(ti);
     	
-    	int[] tour1 = constructNewTour(tour, tIndex, option1);
-    	  	
-    	if(isTour(tour1)) {
-    		return option1;
-    	} else {
-    		int[] tour2 = constructNewTour(tour, tIndex, option2);
-        	if(isTour(tour2)) {
-        		return option2;
-        	}
+    	if(newT == t1 || !isDisjunctive(ti, newT)) {
+    		if(counting) {
+    			rejectedSelections++;
+    		}
+    		return -1;
     	}
-    	return -1;
+    	return newT;
     }
     
-    private int[] constructNewTour(int[] tour2, ArrayList<Integer> tIndex, int newItem) {
-    	ArrayList<Integer> changes = new ArrayList<Integer>(tIndex);
-    	
-    	changes.add(newItem);
-    	changes.add(changes.get(1));
-		return constructNewTour(tour2, changes);
-	}
-
 	/**
      * This function validates whether a sequence of numbers constitutes a tour
      * @param tour an array with the node numbers
@@ -382,11 +1164,86 @@ public class LinKernighan {
     }
     
     /**
-     * Construct T prime
+     * This function cross-checks a committed move against the reference
+     * implementation, that rebuilds the tour from its edges. The gain kept
+     * incrementally is checked against the one recomputed from the x's and
+     * y's of the move and against the difference of the tour lengths
+     * @param k the position of the last t of the move
+     * @param gStar the gain of the move, as kept by the search
+     * @return void
+     */
+    private void checkMove(int k, double gStar) {
+    	double recomputed = -getDistance(tIndex[k], tIndex[1]); // The closing y
+    	for(int i = 1; i < k; ++i) {
+    		double d = getDistance(tIndex[i], tIndex[i+1]);
+    		recomputed += i % 2 == 1? d: -d;
+    	}
+    	if(!sameGain(recomputed, gStar)) {
+    		throw new IllegalStateException("The move gains " + gStar + " but its edges add up to " + recomputed);
+    	}
+    	
+    	ArrayList<Integer> changes = new ArrayList<Integer>();
+    	for(int i = 0; i <= k; ++i) {
+    		changes.add(tIndex[i]);
+    	}
+    	changes.add(tIndex[1]);
+    	int[] before = reference.toArray();
+    	int[] expected = constructNewTour(before, changes);
+    	if(!isTour(expected)) {
+    		throw new IllegalStateException("The committed move does not result in a tour");
+    	}
+    	double shortened = lengthOf(before) - lengthOf(expected);
+    	if(!sameGain(shortened, gStar)) {
+    		throw new IllegalStateException("The move gains " + gStar + " but the tour is " + shortened + " shorter");
+    	}
+    	if(!sameGain(lengthOf(expected), length)) {
+    		throw new IllegalStateException("The length is " + length + " but the tour measures " + lengthOf(expected));
+    	}
+    	reference = new ArrayTour(expected);
+    	checkTour();
+    }
+    
+    /**
+     * This function compares two gains or lengths up to the rounding of the incremental sums
+     * @param a the first value
+     * @param b the second value
+     * @return boolean true if they are equal up to the rounding
      */
-    private int[] getTPrime(ArrayList<Integer> tIndex, int k) {
-    	ArrayList<Integer> al2 = new ArrayList<Integer>(tIndex.subList(0, k + 2 ));
-    	return constructNewTour(tour, al2);
+    private boolean sameGain(double a, double b) {
+    	return Math.abs(a - b) <= 1e-6 * Math.max(1, Math.max(Math.abs(a), Math.abs(b)));
+    }
+    
+    /**
+     * This function measures a tour given as an array
+     * @param order the cities in the order they are visited
+     * @return double the length of the tour
+     */
+    private double lengthOf(int[] order) {
+    	double sum = 0;
+    	for(int i = 0; i < order.length; ++i) {
+    		sum += getDistance(order[i], order[(i + 1) % order.length]);
+    	}
+    	return sum;
+    }
+    
+    /**
+     * This function replaces the edges (a, b) and (c, d) by (b, c) and (d, a),
+     * it is undone by make2OptMove(a, d, c, b)
+     * @param a the first endpoint of the first edge
+     * @param b the second endpoint of the first edge
+     * @param c the first endpoint of the second edge
+     * @param d the second endpoint of the second edge
+     * @return boolean true if the exchange was applied, false if it would not result in a tour
+     */
+    private boolean make2OptMove(int a, int b, int c, int d) {
+    	if(tour.next(a) == b && tour.prev(c) == d) {
+    		tour.flip(b, d);
+    	} else if(tour.prev(a) == b && tour.next(c) == d) {
+    		tour.flip(d, b);
+    	} else {
+    		return false;
+    	}
+    	return true;
     }
     
     /**
@@ -402,15 +1259,16 @@ public class LinKernighan {
     	ArrayList<Edge> Y = deriveY(changes);
     	int s = currentEdges.size();
     	
-    	// Remove Xs
+    	// Remove Xs, each tour edge at most once
+    	EdgeSet removed = new EdgeSet(X.size());
     	for(Edge e: X) {
-    		for(int j = 0; j < currentEdges.size(); ++j) {
-    			Edge m = currentEdges.get(j);
-    			if(e.equals(m)) {
-    				s--;
-    				currentEdges.set(j, null);
-    				break;
-    			}
+    		removed.add(e.get1(), e.get2());
+    	}
+    	for(int j = 0; j < currentEdges.size(); ++j) {
+    		Edge m = currentEdges.get(j);
+    		if(removed.remove(m.get1(), m.get2())) {
+    			s--;
+    			currentEdges.set(j, null);
     		}
     	}
     	
@@ -426,54 +1284,70 @@ public class LinKernighan {
     }
     
     /**
-     * This function takes a list of edges and converts it into a tour
-     * @param currentEdges The list of edges to convert
-     * @return the array representing the tour
+     * This function takes a list of edges and converts it into a tour. The two
+     * neighbors of every city are looked up in arrays, so it takes linear time
+     * @param currentEdges The list of edges to convert, null for the removed ones
+     * @param s the number of edges in the list
+     * @return the array representing the tour, shorter than s if the edges do not form a single cycle
      */
     private int[] createTourFromEdges(ArrayList<Edge> currentEdges, int s) {
 		int[] tour = new int[s];
-    	
-		int i = 0;
-		int last = -1;
+		int[] first = new int[size];
+		int[] second = new int[size];
+		Arrays.fill(first, -1);
+		Arrays.fill(second, -1);
 		
-		for(; i < currentEdges.size(); ++i) {
-			if(currentEdges.get(i) != null) {
-				tour[0] = currentEdges.get(i).get1();
-				tour[1] = currentEdges.get(i).get2();
-				last = tour[1];
-				break;
+		Edge start = null;
+		for(Edge e: currentEdges) {
+			if(e == null) {
+				continue;
+			}
+			if(start == null) {
+				start = e;
+			}
+			if(!link(first, second, e.get1(), e.get2()) || !link(first, second, e.get2(), e.get1())) {
+				return new int[0]; // A city with more than 2 edges
 			}
 		}
+		if(start == null) {
+			return tour;
+		}
 		
-		currentEdges.set(i, null); // remove the edges
-		
-		int k=2;
-		while(true) {
-			// E = find()
-			int j = 0;
-			for(; j < currentEdges.size(); ++j) {
-				Edge e = currentEdges.get(j);
-				if(e != null && e.get1() == last) {
-					last = e.get2();
-					break;
-				} else if(e != null && e.get2() == last) {
-					last = e.get1();
-					break;
-				}
+		tour[0] = start.get1();
+		tour[1] = start.get2();
+		int previous = tour[0];
+		int last = tour[1];
+		for(int k = 2; k < s; ++k) {
+			int next = first[last] == previous? second[last]: first[last];
+			if(next == -1 || next == tour[0]) {
+				return Arrays.copyOf(tour, k); // The cycle closes before visiting every city
 			}
-			// If the list is empty
-			if(j == currentEdges.size()) break;
-			
-			// Remove new edge
-			currentEdges.set(j, null);
-			if(k >= s) break;
-			tour[k] = last;
-			k++;
+			tour[k] = next;
+			previous = last;
+			last = next;
 		}
-		
 		return tour;
 	}
 
+    /**
+     * This function records a neighbor of a city in the first free of its two slots
+     * @param first the first neighbor of every city, -1 if there is none
+     * @param second the second neighbor of every city, -1 if there is none
+     * @param city the city
+     * @param neighbor the neighbor
+     * @return false if the city already has two neighbors
+     */
+    private static boolean link(int[] first, int[] second, int city, int neighbor) {
+    	if(first[city] == -1) {
+    		first[city] = neighbor;
+    	} else if(second[city] == -1) {
+    		second[city] = neighbor;
+    	} else {
+    		return false;
+    	}
+    	return true;
+    }
+
     /**
      * Get the list of edges from the t index
      * @param changes the list of changes proposed to the tour
@@ -482,7 +1356,7 @@ public class LinKernighan {
 	public ArrayList<Edge> deriveX(ArrayList<Integer> changes) {
 		ArrayList<Edge> es = new ArrayList<Edge>();
 		for(int i = 1; i < changes.size() - 2; i+=2) {
-			Edge e = new Edge(tour[changes.get(i)], tour[changes.get(i+1)]);
+			Edge e = new Edge(changes.get(i), changes.get(i+1));
 			es.add(e);
 		}
     	return es;
@@ -496,7 +1370,7 @@ public class LinKernighan {
     ArrayList<Edge> deriveY(ArrayList<Integer> changes) {
 		ArrayList<Edge> es = new ArrayList<Edge>();
 		for(int i = 2; i < changes.size() - 1; i+=2) {
-			Edge e = new Edge(tour[changes.get(i)], tour[changes.get(i+1)]);
+			Edge e = new Edge(changes.get(i), changes.get(i+1));
 			es.add(e);
 		}
     	return es;
@@ -521,37 +1395,15 @@ public class LinKernighan {
 	
 	/**
 	 * This function allows to check if an edge is already on either X or Y (disjunctivity criteria)
-	 * @param tIndex the index of the nodes in the tour
-	 * @param x the index of one of the endpoints
-	 * @param y the index of one of the endpoints
+	 * @param x one of the endpoints
+	 * @param y one of the endpoints
 	 * @return true when it satisfy the criteria, false otherwise
 	 */
-	private boolean isDisjunctive(ArrayList<Integer> tIndex, int x, int y) {
-		if(x == y) return false;
-		for(int i = 0; i < tIndex.size() -1 ; i++) {
-			if(tIndex.get(i) == x && tIndex.get(i + 1) == y) return false;
-			if(tIndex.get(i) == y && tIndex.get(i + 1) == x) return false;
-		}
-		return true;
+	private boolean isDisjunctive(int x, int y) {
+		return x != y && !xEdges.contains(x, y) && !yEdges.contains(x, y);
 	}
     
     
-    /**
-     * This function gets the index of the node given the actual number of the node in the tour
-     * @param the node id
-     * @return the index on the tour
-     */
-    private int getIndex(int node) {
-    	int i = 0;
-    	for(int t: tour) {
-    		if(node == t) {
-    			return i;
-    		}
-    		i++;
-    	}
-    	return -1;
-    }
-    
     /**
      * This function returns a string with the current tour and its distance
      * @param None
@@ -560,7 +1412,7 @@ public class LinKernighan {
     public String toString() {
         String str = "[" + this.getDistance() + "] : ";
         boolean add = false;
-        for(int city: this.tour) {
+        for(int city: this.tour.toArray()) {
             if(add) {
                 str += " => " + city;
             } else {
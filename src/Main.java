@@ -1,4 +1,6 @@
 import java.io.File;
+import java.io.IOException;
+import java.util.Random;
 import java.util.Scanner;
 
 public class Main{
@@ -27,26 +29,50 @@ public class Main{
         } while(idx >= listOfFiles.length || idx < 0);
 
         
-		// Read the file
-		Interpreter in = new Interpreter(listOfFiles[idx]);
+		// Read the file, or its binary sidecar if it is up to date
+		Problem problem;
+		try {
+			problem = InstanceCache.load(listOfFiles[idx], LinKernighan.DEFAULT_CANDIDATES);
+		} catch(IOException e) {
+			e.printStackTrace();
+			return;
+		}
         
         // Create the instance of the problem
-        LinKernighan lk = new LinKernighan(in.getCoordinates(), in.getIds());
+        LinKernighan lk = new LinKernighan(problem, LinKernighan.DEFAULT_INITIAL_TOUR, new Random().nextLong());
+        System.out.printf("The candidate lists took: %dms%s\n", lk.getCandidateBuildTime(),
+            lk.areCandidatesCached()? " (read from the sidecar)": "");
+        System.out.printf("The starting tour took: %dms (length %.2f)\n", lk.getConstructionTime(), lk.getInitialLength());
         
         // Time keeping
 		long start;
 		start = System.currentTimeMillis();
 		
+		// Solve in the background, the best tour so far can be read at any moment
+		SolverHandle handle = SolverHandle.start(lk, 0);
+		
 		// Shpw the results even if shutdown
         Runtime.getRuntime().addShutdownHook(new Thread() {
             public void run() {
             	System.out.printf("The solution took: %dms\n", System.currentTimeMillis()-start);
                 System.out.println("The solution is: ");
-                System.out.println(lk);
+                
+                // The cities have been renumbered, the ids give their numbers in the file
+                TourSnapshot best = handle.getBest();
+                int[] tour = best.getTour();
+                int[] ids = problem.getIds();
+                for(int i = 0; i < tour.length; ++i) {
+                	tour[i] = ids[tour[i]];
+                }
+                System.out.println(new TourSnapshot(tour, best.getLength(), best.getElapsed(), best.isFinished()));
             }
          });
 		
-		lk.runAlgorithm();
+		try {
+			handle.await();
+		} catch(InterruptedException e) {
+			handle.cancel();
+		}
 
         
 	}
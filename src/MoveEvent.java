@@ -0,0 +1,28 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * This class is the Flight Recorder event of an improving move applied by
+ * the Lin-Kernighan search. It costs nothing when no recording is on.
+ */
+@Name("LinKernighan.Move")
+@Label("Lin-Kernighan Move")
+@Category("Lin-Kernighan")
+@Description("An improving move applied to the tour")
+class MoveEvent extends jdk.jfr.Event {
+
+    @Label("First City")
+    @Description("The city t1 the move started from")
+    int t1;
+
+    @Label("Depth")
+    @Description("The number of edges exchanged by the move")
+    int depth;
+
+    @Label("Gain")
+    @Description("How much shorter the move made the tour")
+    double gain;
+
+}
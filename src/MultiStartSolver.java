@@ -0,0 +1,156 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * This class runs several independent Lin-Kernighan searches at the same time
+ * and keeps the best tour. Every run has its own solver and random seed, while
+ * the coordinates, the candidate lists and (for small instances) the distance
+ * table of the Problem are shared read-only between them.
+ */
+public class MultiStartSolver {
+    /*
+     * Instance variables
+     */
+
+    // The instance to solve
+    private Problem problem;
+
+    // The number of runs
+    private int runs;
+
+    // The number of runs solved at the same time
+    private int threads;
+
+    // The seed of the first run, the next ones use the following numbers
+    private long seed;
+
+    // The construction heuristic of every run
+    private InitialTour initial;
+
+    // The time (in ms since the epoch) at which all the runs stop, 0 for no limit
+    private long deadline;
+
+    // The best tour found so far
+    private int[] bestTour;
+
+    // The length of the best tour found so far
+    private double bestLength;
+
+    /**
+     * Constructor that takes the instance and how many runs to do.
+     * The runs start from random tours, the only construction that gives them different starts
+     * @param Problem the instance to solve
+     * @param int the number of runs
+     * @param int the number of runs solved at the same time
+     * @param long the seed of the first run
+     */
+    public MultiStartSolver(Problem problem, int runs, int threads, long seed) {
+        this.problem = problem;
+        this.runs = runs;
+        this.threads = threads;
+        this.seed = seed;
+        this.initial = InitialTour.RANDOM;
+        this.bestLength = Double.MAX_VALUE;
+    }
+
+    /**
+     * This function sets a time limit for the whole solve, the runs still
+     * going when it expires stop with their current tour, and the runs that
+     * did not start yet are skipped (but the first one, so there is always a tour)
+     * @param long the time limit in ms from now, 0 for no limit
+     * @return void
+     */
+    public void setTimeLimit(long ms) {
+        this.deadline = ms > 0? System.currentTimeMillis() + ms: 0;
+    }
+
+    /**
+     * This function runs all the searches and waits for them to finish
+     * @param None
+     * @return List<RunStatistics> the statistics of every run that started, in seed order
+     */
+    public List<RunStatistics> solve() {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<Future<RunStatistics>> futures = new ArrayList<Future<RunStatistics>>();
+            for(int i = 0; i < runs; ++i) {
+                final long runSeed = seed + i;
+                futures.add(pool.submit(new Callable<RunStatistics>() {
+                    public RunStatistics call() {
+                        return run(runSeed);
+                    }
+                }));
+            }
+
+            List<RunStatistics> statistics = new ArrayList<RunStatistics>();
+            for(Future<RunStatistics> future: futures) {
+                RunStatistics run = future.get();
+                if(run != null) {
+                    statistics.add(run);
+                }
+            }
+            return statistics;
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The solve has been interrupted", e);
+        } catch(ExecutionException e) {
+            throw new IllegalStateException("A run has failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * This function does a single run
+     * @param long the seed of the run
+     * @return RunStatistics the outcome of the run, null if the deadline passed before it started
+     */
+    private RunStatistics run(long runSeed) {
+        if(runSeed != seed && deadline != 0 && System.currentTimeMillis() >= deadline) {
+            return null;
+        }
+        long start = System.currentTimeMillis();
+        LinKernighan lk = new LinKernighan(problem, initial, runSeed);
+        lk.setDeadline(deadline);
+        lk.runAlgorithm();
+        offer(lk.getTour(), lk.getLength());
+        return new RunStatistics(runSeed, lk.getInitialLength(), lk.getLength(),
+            System.currentTimeMillis() - start, lk.isFinished());
+    }
+
+    /**
+     * This function keeps a tour if it is the best one so far
+     * @param int[] the tour
+     * @param double its length
+     * @return void
+     */
+    private synchronized void offer(int[] tour, double length) {
+        if(length < bestLength) {
+            bestLength = length;
+            bestTour = tour;
+        }
+    }
+
+    /**
+     * Getter that returns the best tour found
+     * @param None
+     * @return int[] the cities in the order they are visited, null before solve
+     */
+    public synchronized int[] getBestTour() {
+        return this.bestTour;
+    }
+
+    /**
+     * Getter that returns the length of the best tour found
+     * @param None
+     * @return double the length of the tour
+     */
+    public synchronized double getBestLength() {
+        return this.bestLength;
+    }
+
+}
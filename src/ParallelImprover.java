@@ -0,0 +1,459 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class improves a single tour with several threads at the same time.
+ * The cities are split in regions along a Hilbert curve, one per thread, and
+ * every thread runs the Lin-Kernighan search from the cities of its region
+ * only (improve(t1)), with its own don't-look queue. The moves of all the
+ * threads go to one shared tour, so a move can reach anywhere in the plane,
+ * as in a single solver.
+ *
+ * The search applies its steps to the tour as it goes, so every thread
+ * searches on its own copy of the shared tour. A move found on a copy is a
+ * list of 2-opt steps, which is committed by replaying them on the shared
+ * tour under its lock, and appended to a log of the committed steps. The
+ * commit only holds if every edge the move breaks is still in the tour:
+ * the tour has a version (the length of the log), and a move found on the
+ * current version always applies, while a move found on an older one is
+ * checked step by step. When another thread has broken one of its edges
+ * meanwhile, the steps already replayed are undone and the search from the
+ * city is retried on the new tour. Before every search a thread replays the
+ * steps the others have committed on its copy, and activates the cities of
+ * its region they touched.
+ *
+ * A thread runs passes over its active cities as runAlgorithm does, with a
+ * check pass over its whole region when none is left, and waits once a check
+ * pass finds nothing; it wakes up when another thread commits a move. The
+ * improvement ends when all the threads are waiting, or at the time limit.
+ * With one thread the moves are the ones of runAlgorithm from the same tour.
+ * Which move commits first depends on the scheduling, so two solves with
+ * several threads and the same seed may give different tours.
+ */
+public class ParallelImprover {
+    /*
+     * Instance variables
+     */
+
+    // The instance
+    private Problem problem;
+
+    // The city at every position of the tour, the start until the improvement is over
+    private int[] order;
+
+    // The number of threads searching at the same time
+    private int threads;
+
+    // The seed of the first thread, the next ones use the following numbers
+    private long seed;
+
+    // The time (in ms since the epoch) at which the improvement stops, 0 for no limit
+    private long deadline;
+
+    // Whether every commit is checked against the whole tour
+    private boolean debug;
+
+    // The shared tour, every committed move is applied to it (guarded by this)
+    private LinKernighan shared;
+
+    // The region of every city, which is the thread that searches from it
+    private int[] region;
+
+    // The steps of the committed moves, 4 cities each (guarded by this)
+    private int[] log;
+
+    // The number of cities in the log, the version of the shared tour (guarded by this)
+    private int logLength;
+
+    // How much of the log every thread has replayed on its copy, written by that thread or under its commit
+    private int[] replayed;
+
+    // The number of threads waiting for a move or done (guarded by this)
+    private int idle;
+
+    // The number of searches from a city, retries included
+    private AtomicInteger searches;
+
+    // The number of moves committed to the shared tour
+    private AtomicInteger commits;
+
+    // The number of moves dropped because another thread had broken one of their edges
+    private AtomicInteger conflicts;
+
+    // The length of the tour (guarded by this)
+    private double length;
+
+    // The number of times the search from a city is retried after a conflict
+    private static final int MAX_RETRIES = 3;
+
+    /**
+     * Constructor that takes the tour to improve
+     * @param Problem the instance
+     * @param int[] the cities in the order they are visited
+     * @param int the number of threads searching at the same time
+     * @param long the seed of the first thread
+     */
+    public ParallelImprover(Problem problem, int[] order, int threads, long seed) {
+        this.problem = problem;
+        this.order = order.clone();
+        this.threads = threads;
+        this.seed = seed;
+        this.searches = new AtomicInteger();
+        this.commits = new AtomicInteger();
+        this.conflicts = new AtomicInteger();
+        this.length = tourLength();
+    }
+
+    /**
+     * This function sets a time limit for the improvement, the threads stop
+     * after their current search when it expires
+     * @param long the time limit in ms from now, 0 for no limit
+     * @return void
+     */
+    public void setTimeLimit(long ms) {
+        this.deadline = ms > 0? System.currentTimeMillis() + ms: 0;
+    }
+
+    /**
+     * This function enables or disables the check of every commit
+     * @param boolean true to check the shared tour and its length after every commit
+     * @return void
+     */
+    public void setDebug(boolean debug) {
+        this.debug = debug;
+    }
+
+    /**
+     * This function improves the tour until no thread finds anything to improve
+     * @param None
+     * @return void
+     */
+    public void improve() {
+        shared = new LinKernighan(problem, order, new int[0], seed);
+        shared.setCounting(false);
+        shared.setDebug(debug);
+        region = partition();
+        log = new int[1024];
+        logLength = 0;
+        replayed = new int[threads];
+        idle = 0;
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for(int t = 0; t < threads; ++t) {
+                final int thread = t;
+                futures.add(pool.submit(new Callable<Void>() {
+                    public Void call() throws InterruptedException {
+                        work(thread);
+                        return null;
+                    }
+                }));
+            }
+            for(Future<Void> future: futures) {
+                future.get();
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The improvement has been interrupted", e);
+        } catch(ExecutionException e) {
+            throw new IllegalStateException("A thread has failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        synchronized(this) {
+            order = shared.getTour();
+            length = shared.getLength();
+        }
+    }
+
+    /**
+     * This function splits the cities in as many regions as threads, consecutive
+     * along a Hilbert curve so every region is compact in the plane
+     * @param None
+     * @return int[] the region of every city
+     */
+    private int[] partition() {
+        int size = order.length;
+        int[] curve = HilbertCurve.order(problem.getXs(), problem.getYs());
+        int[] regions = new int[size];
+        for(int i = 0; i < size; ++i) {
+            regions[curve[i]] = (int) ((long) i * threads / size);
+        }
+        return regions;
+    }
+
+    /**
+     * This function is the loop of a thread: passes over the active cities of its
+     * region until a check pass finds nothing, then it waits for the moves of the others
+     * @param int the thread, which is also its region
+     * @return void
+     * @throws InterruptedException if the thread is interrupted while it waits
+     */
+    private void work(int thread) throws InterruptedException {
+        try {
+            // The copy starts from the tour the log starts from, the first replay brings it up to date
+            int[] cities = new int[order.length];
+            int count = 0;
+            for(int city: order) {
+                if(region[city] == thread) {
+                    cities[count++] = city;
+                }
+            }
+            LinKernighan lk = new LinKernighan(problem, order, Arrays.copyOf(cities, count), seed + thread);
+            lk.setCounting(false);
+            lk.setDebug(debug);
+            lk.setDeadline(deadline);
+
+            boolean optimal = false;
+            while(!lk.isExpired()) {
+                replay(lk, thread);
+                if(optimal && lk.getActiveCount() == 0) {
+                    if(!waitForMoves(thread)) {
+                        return;
+                    }
+                    optimal = false;
+                    continue;
+                }
+
+                // As in runPass: when no city is active, the whole region is checked again
+                boolean check = lk.getActiveCount() == 0;
+                int version = replayed[thread];
+                if(check) {
+                    for(int city = 0; city < region.length; ++city) {
+                        if(region[city] == thread) {
+                            lk.activate(city);
+                        }
+                    }
+                }
+                boolean changed = false;
+                for(int n = lk.getActiveCount(); n > 0 && lk.getActiveCount() > 0 && !lk.isExpired(); --n) {
+                    int t1 = lk.pollActive();
+                    if(region[t1] == thread) {
+                        changed |= search(lk, thread, t1);
+                    }
+                }
+                replay(lk, thread);
+                // The region is only optimal if no thread has changed the tour during its check pass
+                optimal = check && !changed && lk.getActiveCount() == 0 && replayed[thread] == version;
+            }
+        } finally {
+            retire();
+        }
+    }
+
+    /**
+     * This function searches for a move from a city on the copy of a thread and commits it.
+     * After a conflict the copy is brought up to date and the search is tried again,
+     * at most MAX_RETRIES times, then the city is left active for the next pass
+     * @param LinKernighan the copy of the thread
+     * @param int the thread
+     * @param int the city to start with
+     * @return boolean true if the search has done something: a move or a conflict
+     */
+    private boolean search(LinKernighan lk, int thread, int t1) {
+        for(int attempt = 0; attempt <= MAX_RETRIES; ++attempt) {
+            searches.incrementAndGet();
+            int[] steps = lk.improveAndRecord(t1);
+            if(steps == null) {
+                return attempt > 0;
+            }
+
+            int version = replayed[thread];
+            boolean committed = commit(steps, thread);
+            if(replayed[thread] == version) {
+                // Other moves have been committed first: the copy gets the move back from the log, after them
+                lk.undoSteps(steps);
+                replay(lk, thread);
+            }
+            if(committed) {
+                return true;
+            }
+            conflicts.incrementAndGet();
+        }
+        lk.activate(t1);
+        return true;
+    }
+
+    /**
+     * This function replays the steps of a move on the shared tour and logs them.
+     * The move is dropped if one of the edges it breaks is no longer in the tour.
+     * When the move has been found on the current version of the tour, the copy of
+     * the thread already is the new tour and is marked as up to date
+     * @param int[] the steps of the move, 4 cities each
+     * @param int the thread that has found the move
+     * @return boolean true if the move has been committed
+     */
+    private synchronized boolean commit(int[] steps, int thread) {
+        boolean current = logLength == replayed[thread];
+        if(!shared.applySteps(steps, 0, steps.length)) {
+            return false;
+        }
+        if(logLength + steps.length > log.length) {
+            log = Arrays.copyOf(log, Math.max(2 * log.length, logLength + steps.length));
+        }
+        System.arraycopy(steps, 0, log, logLength, steps.length);
+        logLength += steps.length;
+        if(current) {
+            replayed[thread] = logLength;
+        }
+        commits.incrementAndGet();
+        if(debug) {
+            double actual = shared.getDistance();
+            if(Math.abs(actual - shared.getLength()) > 1e-6 * Math.max(1, actual)) {
+                throw new IllegalStateException("The shared tour is " + actual + " long but " + shared.getLength() + " has been tracked");
+            }
+        }
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * This function brings the copy of a thread up to date with the steps committed since
+     * its last replay, and activates the cities of its region that they touch
+     * @param LinKernighan the copy of the thread
+     * @param int the thread
+     * @return void
+     * @throws IllegalStateException if a step does not apply, the copy has diverged from the shared tour
+     */
+    private void replay(LinKernighan lk, int thread) {
+        int[] steps;
+        int end;
+        synchronized(this) {
+            steps = log;
+            end = logLength;
+        }
+        int from = replayed[thread];
+        if(from == end) {
+            return;
+        }
+        if(!lk.applySteps(steps, from, end)) {
+            throw new IllegalStateException("The copy of thread " + thread + " has diverged from the shared tour");
+        }
+        for(int i = from; i < end; ++i) {
+            if(region[steps[i]] == thread) {
+                lk.activate(steps[i]);
+            }
+        }
+        replayed[thread] = end;
+    }
+
+    /**
+     * This function makes a thread wait until another one commits a move. When all
+     * the threads are waiting, nothing can change anymore and the improvement is over
+     * @param int the thread
+     * @return boolean true if there are moves to replay, false when the improvement is over
+     * @throws InterruptedException if the thread is interrupted while it waits
+     */
+    private synchronized boolean waitForMoves(int thread) throws InterruptedException {
+        idle++;
+        while(logLength == replayed[thread] && idle < threads) {
+            wait();
+        }
+        if(logLength != replayed[thread]) {
+            idle--;
+            return true;
+        }
+        notifyAll();
+        return false;
+    }
+
+    /**
+     * This function records that a thread is done, at the time limit or after a failure,
+     * so the threads waiting for it do not wait forever
+     * @param None
+     * @return void
+     */
+    private synchronized void retire() {
+        idle++;
+        notifyAll();
+    }
+
+    /**
+     * This function checks that the tour visits every city exactly once, and that the
+     * length tracked from the gains of the commits is the length of the tour
+     * @param None
+     * @return void
+     * @throws IllegalStateException if the tour is not a permutation of the cities or its length is wrong
+     */
+    public void checkTour() {
+        boolean[] visited = new boolean[order.length];
+        for(int city: order) {
+            if(city < 0 || city >= order.length || visited[city]) {
+                throw new IllegalStateException("City " + city + " is visited twice or does not exist");
+            }
+            visited[city] = true;
+        }
+        double actual = tourLength();
+        if(Math.abs(actual - getLength()) > 1e-6 * Math.max(1, actual)) {
+            throw new IllegalStateException("The tracked length is " + getLength() + " but the tour is " + actual + " long");
+        }
+    }
+
+    /**
+     * This function computes the length of the tour
+     * @param None
+     * @return double the length of the tour
+     */
+    private double tourLength() {
+        DistanceProvider distances = problem.createDistanceProvider();
+        double total = 0;
+        for(int i = 0; i < order.length; ++i) {
+            total += distances.get(order[i], order[(i + 1) % order.length]);
+        }
+        return total;
+    }
+
+    /**
+     * Getter that returns the tour
+     * @param None
+     * @return int[] the cities in the order they are visited
+     */
+    public synchronized int[] getTour() {
+        return this.order.clone();
+    }
+
+    /**
+     * Getter that returns the length of the tour
+     * @param None
+     * @return double the length of the tour
+     */
+    public synchronized double getLength() {
+        return this.length;
+    }
+
+    /**
+     * Getter that returns the number of searches from a city
+     * @param None
+     * @return int the number of searches, retries included
+     */
+    public int getSearches() {
+        return this.searches.get();
+    }
+
+    /**
+     * Getter that returns the number of moves committed to the shared tour
+     * @param None
+     * @return int the number of commits
+     */
+    public int getCommits() {
+        return this.commits.get();
+    }
+
+    /**
+     * Getter that returns the number of moves dropped because another thread had broken one of their edges
+     * @param None
+     * @return int the number of conflicts
+     */
+    public int getConflicts() {
+        return this.conflicts.get();
+    }
+
+}
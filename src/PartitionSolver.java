@@ -0,0 +1,448 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * This class solves huge instances by spatial decomposition, in the style of
+ * Karp partitioning: the plane is split by medians into regions of a bounded
+ * number of cities, every region is solved on its own in parallel, the
+ * sub-tours are stitched into one tour following the regions along a Hilbert
+ * curve, and a last Lin-Kernighan search starting only from the cities near the
+ * region boundaries repairs the seams. That search never activates the other
+ * cities for a check pass and stops after at most SEAM_PASSES passes, so it
+ * stays around the seams instead of running to a local optimum of the whole
+ * instance.
+ */
+public class PartitionSolver {
+    /*
+     * Instance variables
+     */
+
+    // The instance to solve
+    private Problem problem;
+
+    // The maximum number of cities of a region
+    private int regionSize;
+
+    // The number of regions solved at the same time
+    private int threads;
+
+    // The seed of the first region, the next ones use the following numbers
+    private long seed;
+
+    // The time (in ms since the epoch) at which the solve stops, 0 for no limit
+    private long deadline;
+
+    // The coordinates of the cities, taken once from the instance since they may be copies
+    private double[] xs;
+    private double[] ys;
+
+    // The cities, permuted so that every region is a range
+    private int[] cities;
+
+    // The start of every region in the permutation, plus its end as last entry
+    private List<Integer> bounds;
+
+    // The region of every city
+    private int[] regionOf;
+
+    // The tour found
+    private int[] tour;
+
+    // The tour of the stitched regions, before the pass along the boundaries
+    private int[] stitchedTour;
+
+    // The length of the tour before the pass along the boundaries
+    private double stitchedLength;
+
+    // The length of the tour found
+    private double length;
+
+    // The number of cities the pass along the boundaries started from
+    private int boundaryCities;
+
+    // The number of passes of the search along the boundaries
+    private int seamPasses;
+
+    // The maximum number of passes over the active cities along the boundaries
+    public static final int SEAM_PASSES = 50;
+
+    // The default maximum number of cities of a region
+    public static final int DEFAULT_REGION_SIZE = 2000;
+
+    /**
+     * Constructor that takes the instance and how to split it
+     * @param Problem the instance to solve
+     * @param int the maximum number of cities of a region
+     * @param int the number of regions solved at the same time
+     * @param long the seed of the first region
+     */
+    public PartitionSolver(Problem problem, int regionSize, int threads, long seed) {
+        if(regionSize < 8) {
+            throw new IllegalArgumentException("A region needs at least 8 cities");
+        }
+        this.problem = problem;
+        this.regionSize = regionSize;
+        this.threads = threads;
+        this.seed = seed;
+        this.length = Double.MAX_VALUE;
+    }
+
+    /**
+     * This function sets a time limit for the whole solve, the regions and the
+     * pass along the boundaries still going when it expires stop with their current tour
+     * @param long the time limit in ms from now, 0 for no limit
+     * @return void
+     */
+    public void setTimeLimit(long ms) {
+        this.deadline = ms > 0? System.currentTimeMillis() + ms: 0;
+    }
+
+    /**
+     * This function splits the instance, solves the regions, stitches them and
+     * improves the seams
+     * @param None
+     * @return void
+     */
+    public void solve() {
+        int size = problem.size();
+        xs = problem.getXs();
+        ys = problem.getYs();
+        cities = new int[size];
+        for(int i = 0; i < size; ++i) {
+            cities[i] = i;
+        }
+        bounds = new ArrayList<Integer>();
+        partition(0, size);
+        bounds.add(size);
+
+        int regions = bounds.size() - 1;
+        regionOf = new int[size];
+        for(int r = 0; r < regions; ++r) {
+            for(int i = bounds.get(r); i < bounds.get(r + 1); ++i) {
+                regionOf[cities[i]] = r;
+            }
+        }
+
+        int[][] subTours = solveRegions(regions);
+        int[] order = stitch(subTours);
+        stitchedTour = order.clone();
+
+        LinKernighan lk = new LinKernighan(problem, order, findBoundaryCities(), seed + regions);
+        lk.setDeadline(deadline);
+        stitchedLength = lk.getLength();
+        lk.runActiveCities(SEAM_PASSES);
+        seamPasses = lk.getPasses();
+        tour = lk.getTour();
+        length = lk.getLength();
+    }
+
+    /**
+     * This function splits a range of cities by the median of its widest
+     * dimension until the ranges are no bigger than a region
+     * @param int the first position of the range
+     * @param int the position after the last one of the range
+     * @return void
+     */
+    private void partition(int lo, int hi) {
+        if(hi - lo <= regionSize) {
+            bounds.add(lo);
+            return;
+        }
+
+        double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for(int i = lo; i < hi; ++i) {
+            int c = cities[i];
+            minX = Math.min(minX, xs[c]);
+            maxX = Math.max(maxX, xs[c]);
+            minY = Math.min(minY, ys[c]);
+            maxY = Math.max(maxY, ys[c]);
+        }
+
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, maxX - minX >= maxY - minY? xs: ys);
+        partition(lo, mid);
+        partition(mid, hi);
+    }
+
+    /**
+     * This function rearranges a range so the city at position k is the one
+     * that would be there if the range was sorted (quickselect)
+     * @param int the first position of the range
+     * @param int the last position of the range (inclusive)
+     * @param int the position to select
+     * @param double[] the coordinate to compare
+     * @return void
+     */
+    private void select(int lo, int hi, int k, double[] key) {
+        while(hi > lo) {
+            // Median of three as pivot
+            int mid = (lo + hi) >>> 1;
+            if(key[cities[mid]] < key[cities[lo]]) swap(mid, lo);
+            if(key[cities[hi]] < key[cities[lo]]) swap(hi, lo);
+            if(key[cities[hi]] < key[cities[mid]]) swap(hi, mid);
+            double pivot = key[cities[mid]];
+
+            int i = lo, j = hi;
+            while(i <= j) {
+                while(key[cities[i]] < pivot) i++;
+                while(key[cities[j]] > pivot) j--;
+                if(i <= j) {
+                    swap(i, j);
+                    i++;
+                    j--;
+                }
+            }
+
+            if(k <= j) {
+                hi = j;
+            } else if(k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Simple swap of two positions of the permutation
+     * @param int the first position
+     * @param int the second position
+     * @return void
+     */
+    private void swap(int i, int j) {
+        int a = cities[i];
+        cities[i] = cities[j];
+        cities[j] = a;
+    }
+
+    /**
+     * This function solves all the regions in parallel
+     * @param int the number of regions
+     * @return int[][] the tour of every region, as cities of the whole instance
+     */
+    private int[][] solveRegions(int regions) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<Future<int[]>> futures = new ArrayList<Future<int[]>>();
+            for(int r = 0; r < regions; ++r) {
+                final int region = r;
+                futures.add(pool.submit(new Callable<int[]>() {
+                    public int[] call() {
+                        return solveRegion(region);
+                    }
+                }));
+            }
+
+            int[][] subTours = new int[regions][];
+            for(int r = 0; r < regions; ++r) {
+                subTours[r] = futures.get(r).get();
+            }
+            return subTours;
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The solve has been interrupted", e);
+        } catch(ExecutionException e) {
+            throw new IllegalStateException("A region has failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * This function solves a single region as an instance of its own
+     * @param int the region
+     * @return int[] the tour of the region, as cities of the whole instance
+     */
+    private int[] solveRegion(int region) {
+        int lo = bounds.get(region);
+        int n = bounds.get(region + 1) - lo;
+        double[] subXs = new double[n];
+        double[] subYs = new double[n];
+        int[] ids = new int[n];
+        for(int i = 0; i < n; ++i) {
+            int c = cities[lo + i];
+            subXs[i] = xs[c];
+            subYs[i] = ys[c];
+            ids[i] = c;
+        }
+
+        Problem sub = new Problem(subXs, subYs, ids, problem.getCandidates().getK(), problem.getDistanceFunction());
+        LinKernighan lk = new LinKernighan(sub, LinKernighan.DEFAULT_INITIAL_TOUR, seed + region);
+        lk.setDeadline(deadline);
+        lk.runAlgorithm();
+
+        int[] order = lk.getTour();
+        for(int i = 0; i < n; ++i) {
+            order[i] = ids[order[i]];
+        }
+        return order;
+    }
+
+    /**
+     * This function joins the tours of the regions into one: the regions are
+     * visited in the order of their centers along a Hilbert curve, and every
+     * tour is opened at the edge that gives the cheapest way from the previous
+     * region into the next one
+     * @param int[][] the tour of every region
+     * @return int[] the cities of the whole instance in the order they are visited
+     */
+    private int[] stitch(int[][] subTours) {
+        DistanceFunction function = problem.getDistanceFunction();
+        int regions = subTours.length;
+
+        double[] centerXs = new double[regions];
+        double[] centerYs = new double[regions];
+        for(int r = 0; r < regions; ++r) {
+            for(int c: subTours[r]) {
+                centerXs[r] += xs[c];
+                centerYs[r] += ys[c];
+            }
+            centerXs[r] /= subTours[r].length;
+            centerYs[r] /= subTours[r].length;
+        }
+        int[] visit = HilbertCurve.order(centerXs, centerYs);
+
+        int[] order = new int[problem.size()];
+        int n = 0;
+        int last = visit[regions - 1];
+        double fromX = centerXs[last], fromY = centerYs[last];
+        for(int v = 0; v < regions; ++v) {
+            int[] sub = subTours[visit[v]];
+            int next = visit[(v + 1) % regions];
+            double toX = centerXs[next], toY = centerYs[next];
+
+            // Open the cycle at the edge (sub[i], sub[i+1]), entering at either end
+            int m = sub.length;
+            int bestEdge = 0;
+            boolean bestForward = true;
+            double best = Double.MAX_VALUE;
+            for(int i = 0; i < m; ++i) {
+                int a = sub[i], b = sub[(i + 1) % m];
+                double edge = function.distance(xs[a], ys[a], xs[b], ys[b]);
+                double forward = function.distance(fromX, fromY, xs[b], ys[b]) + function.distance(xs[a], ys[a], toX, toY) - edge;
+                double backward = function.distance(fromX, fromY, xs[a], ys[a]) + function.distance(xs[b], ys[b], toX, toY) - edge;
+                if(forward < best) {
+                    best = forward;
+                    bestEdge = i;
+                    bestForward = true;
+                }
+                if(backward < best) {
+                    best = backward;
+                    bestEdge = i;
+                    bestForward = false;
+                }
+            }
+
+            int exit;
+            if(bestForward) {
+                // From sub[i+1] forward around to sub[i]
+                for(int j = 1; j <= m; ++j) {
+                    order[n++] = sub[(bestEdge + j) % m];
+                }
+                exit = sub[bestEdge];
+            } else {
+                // From sub[i] backward around to sub[i+1]
+                for(int j = 0; j < m; ++j) {
+                    order[n++] = sub[(bestEdge - j + m) % m];
+                }
+                exit = sub[(bestEdge + 1) % m];
+            }
+            fromX = xs[exit];
+            fromY = ys[exit];
+        }
+        return order;
+    }
+
+    /**
+     * This function finds the cities that have a candidate neighbor in another
+     * region, the seams are the only places where the stitched tour may be poor
+     * @param None
+     * @return int[] the cities near a boundary
+     */
+    private int[] findBoundaryCities() {
+        CandidateSet candidates = problem.getCandidates();
+        int size = problem.size();
+        int[] boundary = new int[size];
+        int n = 0;
+        for(int c = 0; c < size; ++c) {
+            for(int i = 0; i < candidates.size(c); ++i) {
+                if(regionOf[candidates.get(c, i)] != regionOf[c]) {
+                    boundary[n++] = c;
+                    break;
+                }
+            }
+        }
+        boundaryCities = n;
+        return Arrays.copyOf(boundary, n);
+    }
+
+    /**
+     * Getter that returns the tour found
+     * @param None
+     * @return int[] the cities in the order they are visited, null before solve
+     */
+    public int[] getTour() {
+        return this.tour;
+    }
+
+    /**
+     * Getter that returns the length of the tour found
+     * @param None
+     * @return double the length of the tour
+     */
+    public double getLength() {
+        return this.length;
+    }
+
+    /**
+     * Getter that returns the stitched tour, before the pass along the boundaries
+     * @param None
+     * @return int[] the cities in the order they are visited, null before solve
+     */
+    public int[] getStitchedTour() {
+        return this.stitchedTour;
+    }
+
+    /**
+     * Getter that returns the length of the stitched tour, before the pass along the boundaries
+     * @param None
+     * @return double the length of the tour
+     */
+    public double getStitchedLength() {
+        return this.stitchedLength;
+    }
+
+    /**
+     * Getter that returns the number of regions
+     * @param None
+     * @return int the number of regions, 0 before solve
+     */
+    public int getRegionCount() {
+        return this.bounds == null? 0: this.bounds.size() - 1;
+    }
+
+    /**
+     * Getter that returns the number of cities the pass along the boundaries started from
+     * @param None
+     * @return int the number of cities
+     */
+    public int getBoundaryCities() {
+        return this.boundaryCities;
+    }
+
+    /**
+     * Getter that returns the number of passes along the boundaries
+     * @param None
+     * @return int the number of passes, at most SEAM_PASSES
+     */
+    public int getSeamPasses() {
+        return this.seamPasses;
+    }
+
+}
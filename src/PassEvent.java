@@ -0,0 +1,32 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * This class is the Flight Recorder event of a pass of the Lin-Kernighan
+ * search over the active cities. It costs nothing when no recording is on.
+ */
+@Name("LinKernighan.Pass")
+@Label("Lin-Kernighan Pass")
+@Category("Lin-Kernighan")
+@Description("A pass of the search over the cities that are active when it starts")
+class PassEvent extends jdk.jfr.Event {
+
+    @Label("Active Cities")
+    @Description("The number of cities queued when the pass started")
+    int activeCities;
+
+    @Label("Moves")
+    @Description("The number of improving moves applied during the pass")
+    int moves;
+
+    @Label("Gain")
+    @Description("How much shorter the tour got during the pass")
+    double gain;
+
+    @Label("Length")
+    @Description("The length of the tour at the end of the pass")
+    double length;
+
+}
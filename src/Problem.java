@@ -0,0 +1,270 @@
+import java.util.ArrayList;
+
+/**
+ * This class holds the data of an instance that never changes while it is
+ * solved: the coordinates, the ids and the candidate lists of the cities.
+ * It is only read after its construction, so several solvers running in
+ * parallel can share it.
+ *
+ * The solvers reach the data through the getters and the factories of this
+ * class (createDistanceProvider, createTour), so a subclass can keep it off
+ * the heap, as SegmentProblem does.
+ */
+public class Problem {
+    /*
+     * Instance variables
+     */
+
+    // The ids of all the cities
+    private int[] ids;
+
+    // The x coordinates of all the cities
+    private double[] xs;
+
+    // The y coordinates of all the cities
+    private double[] ys;
+
+    // The candidate neighbors of every city
+    private CandidateSet candidates;
+
+    // The time it took to build the candidate lists (in ms), or to read them when they are cached
+    private long candidateBuildTime;
+
+    // Whether the candidate lists were read from a sidecar instead of being built
+    private boolean candidatesCached;
+
+    // How the distances between the cities are computed
+    private DistanceFunction function;
+
+    // The full distance table, only for instances up to TABLE_LIMIT cities
+    private DistanceTable table;
+
+    // Above this number of cities the distances are computed on demand instead of using a full table
+    public static final int TABLE_LIMIT = 4000;
+
+    /**
+     * Constructor that takes the output of the Interpreter
+     * @param ArrayList<Point> the coordinates of all the cities
+     * @param ArrayList<Integer> the id of all the cities
+     * @param int the number of candidate neighbors per city
+     */
+    public Problem(ArrayList<Point> coordinates, ArrayList<Integer> ids, int k) {
+        this(xsOf(coordinates), ysOf(coordinates), idsOf(ids), k);
+    }
+
+    /**
+     * Constructor that takes the cities as primitive arrays, with euclidean distances
+     * @param double[] the x coordinates of all the cities
+     * @param double[] the y coordinates of all the cities
+     * @param int[] the id of all the cities
+     * @param int the number of candidate neighbors per city
+     */
+    public Problem(double[] xs, double[] ys, int[] ids, int k) {
+        this(xs, ys, ids, k, DistanceFunction.EUCLIDEAN);
+    }
+
+    /**
+     * Constructor that takes the cities as primitive arrays
+     * @param double[] the x coordinates of all the cities
+     * @param double[] the y coordinates of all the cities
+     * @param int[] the id of all the cities
+     * @param int the number of candidate neighbors per city
+     * @param DistanceFunction how the distances are computed
+     */
+    public Problem(double[] xs, double[] ys, int[] ids, int k, DistanceFunction function) {
+        this.xs = xs;
+        this.ys = ys;
+        this.ids = ids;
+        this.function = function;
+
+        long start = System.currentTimeMillis();
+        this.candidates = new CandidateSet(xs, ys, k, function);
+        this.candidateBuildTime = System.currentTimeMillis() - start;
+
+        if(xs.length <= TABLE_LIMIT) {
+            this.table = new DistanceTable(xs, ys, function);
+        }
+    }
+
+    /**
+     * Constructor that takes candidate lists that have already been built
+     * @param double[] the x coordinates of all the cities
+     * @param double[] the y coordinates of all the cities
+     * @param int[] the id of all the cities
+     * @param CandidateSet the candidate neighbors of every city
+     * @param DistanceFunction how the distances are computed
+     */
+    public Problem(double[] xs, double[] ys, int[] ids, CandidateSet candidates, DistanceFunction function) {
+        this.xs = xs;
+        this.ys = ys;
+        this.ids = ids;
+        this.candidates = candidates;
+        this.function = function;
+
+        if(xs.length <= TABLE_LIMIT) {
+            this.table = new DistanceTable(xs, ys, function);
+        }
+    }
+
+    /**
+     * Constructor for the subclasses that keep the cities elsewhere, they override the getters
+     * @param DistanceFunction how the distances are computed
+     */
+    protected Problem(DistanceFunction function) {
+        this.function = function;
+    }
+
+    /**
+     * This function returns the provider of the distances for a solver: small
+     * instances share the full table, bigger ones get their own bounded cache
+     * (the cache is written when it is read, so it can not be shared)
+     * @param None
+     * @return DistanceProvider the provider of the distances
+     */
+    public DistanceProvider createDistanceProvider() {
+        if(this.table != null) {
+            return this.table;
+        }
+        return new DistanceCache(this.xs, this.ys, this.function);
+    }
+
+    /**
+     * This function creates the structure that holds the tour of a solver: an array
+     * for small instances, a two-level list for bigger ones
+     * @param int[] the cities in the order they are visited
+     * @return Tour the tour
+     */
+    public Tour createTour(int[] order) {
+        if(order.length <= LinKernighan.ARRAY_TOUR_LIMIT) {
+            return new ArrayTour(order);
+        }
+        return new TwoLevelListTour(order);
+    }
+
+    /**
+     * Getter that returns how the distances are computed
+     * @param None
+     * @return DistanceFunction the distance function
+     */
+    public DistanceFunction getDistanceFunction() {
+        return this.function;
+    }
+
+    /**
+     * Getter that returns the number of cities
+     * @param None
+     * @return int the number of cities
+     */
+    public int size() {
+        return this.xs.length;
+    }
+
+    /**
+     * Getter that returns the x coordinates of the cities. A subclass that keeps them
+     * elsewhere returns a copy (see SegmentProblem), so the callers take them once
+     * rather than in a loop
+     * @param None
+     * @return double[] the x coordinates (not to be modified)
+     */
+    public double[] getXs() {
+        return this.xs;
+    }
+
+    /**
+     * Getter that returns the y coordinates of the cities, a copy in some subclasses (see getXs)
+     * @param None
+     * @return double[] the y coordinates (not to be modified)
+     */
+    public double[] getYs() {
+        return this.ys;
+    }
+
+    /**
+     * Getter that returns the ids of the cities, a copy in some subclasses (see getXs)
+     * @param None
+     * @return int[] the ids (not to be modified)
+     */
+    public int[] getIds() {
+        return this.ids;
+    }
+
+    /**
+     * Getter that returns the candidate lists
+     * @param None
+     * @return CandidateSet the candidate neighbors of every city
+     */
+    public CandidateSet getCandidates() {
+        return this.candidates;
+    }
+
+    /**
+     * Getter that returns the time it took to build the candidate lists, or to
+     * read them from the sidecar when they are cached
+     * @param None
+     * @return long the time in ms
+     */
+    public long getCandidateBuildTime() {
+        return this.candidateBuildTime;
+    }
+
+    /**
+     * Getter that tells whether the candidate lists were read from a sidecar
+     * @param None
+     * @return boolean true if they were not built for this instance
+     */
+    public boolean areCandidatesCached() {
+        return this.candidatesCached;
+    }
+
+    /**
+     * This function records how the candidate lists were obtained when they were
+     * not built by the constructor, it is only called while the instance is loaded
+     * @param long the time in ms it took to build or read them
+     * @param boolean true if they were read from a sidecar
+     * @return void
+     */
+    protected void setCandidateTime(long time, boolean cached) {
+        this.candidateBuildTime = time;
+        this.candidatesCached = cached;
+    }
+
+    /**
+     * This function extracts the x coordinates of a list of points
+     * @param ArrayList<Point> the points
+     * @return double[] the x coordinates
+     */
+    private static double[] xsOf(ArrayList<Point> coordinates) {
+        double[] xs = new double[coordinates.size()];
+        for(int i = 0; i < xs.length; ++i) {
+            xs[i] = coordinates.get(i).getX();
+        }
+        return xs;
+    }
+
+    /**
+     * This function extracts the y coordinates of a list of points
+     * @param ArrayList<Point> the points
+     * @return double[] the y coordinates
+     */
+    private static double[] ysOf(ArrayList<Point> coordinates) {
+        double[] ys = new double[coordinates.size()];
+        for(int i = 0; i < ys.length; ++i) {
+            ys[i] = coordinates.get(i).getY();
+        }
+        return ys;
+    }
+
+    /**
+     * This function unboxes a list of ids
+     * @param ArrayList<Integer> the ids
+     * @return int[] the ids
+     */
+    private static int[] idsOf(ArrayList<Integer> ids) {
+        int[] res = new int[ids.size()];
+        for(int i = 0; i < res.length; ++i) {
+            res[i] = ids.get(i);
+        }
+        return res;
+    }
+
+}
@@ -0,0 +1,95 @@
+/**
+ * This class holds the outcome of a single run of a multi-start solve
+ */
+public class RunStatistics {
+    /*
+     * Instance variables
+     */
+
+    // The seed of the random generator of the run
+    private long seed;
+
+    // The length of the starting tour
+    private double initialLength;
+
+    // The length of the final tour
+    private double length;
+
+    // The time the run took (in ms)
+    private long time;
+
+    // Whether the run reached a local optimum before the deadline
+    private boolean finished;
+
+    /**
+     * Constructor with all the variables that form part of this structure
+     * @param long the seed of the run
+     * @param double the length of the starting tour
+     * @param double the length of the final tour
+     * @param long the time the run took in ms
+     * @param boolean whether the run reached a local optimum
+     */
+    public RunStatistics(long seed, double initialLength, double length, long time, boolean finished) {
+        this.seed = seed;
+        this.initialLength = initialLength;
+        this.length = length;
+        this.time = time;
+        this.finished = finished;
+    }
+
+    /**
+     * Getter that returns the seed of the run
+     * @param None
+     * @return long the seed of the run
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Getter that returns the length of the starting tour
+     * @param None
+     * @return double the length of the starting tour
+     */
+    public double getInitialLength() {
+        return this.initialLength;
+    }
+
+    /**
+     * Getter that returns the length of the final tour
+     * @param None
+     * @return double the length of the final tour
+     */
+    public double getLength() {
+        return this.length;
+    }
+
+    /**
+     * Getter that returns the time the run took in ms
+     * @param None
+     * @return long the time the run took in ms
+     */
+    public long getTime() {
+        return this.time;
+    }
+
+    /**
+     * Getter that returns whether the run reached a local optimum
+     * @param None
+     * @return boolean true if the run reached a local optimum
+     */
+    public boolean isFinished() {
+        return this.finished;
+    }
+
+    /**
+     * This function returns a one-line summary of the run
+     * @param None
+     * @return String the summary
+     */
+    public String toString() {
+        return String.format("seed %d: %.2f -> %.2f in %dms%s", seed, initialLength, length, time,
+            finished? "": " (stopped by the deadline)");
+    }
+
+}
@@ -0,0 +1,170 @@
+/**
+ * This class is a snapshot of the counters of a Lin-Kernighan search. The
+ * solver publishes a new one regularly while it runs, so another thread can
+ * follow a long solve without slowing it down.
+ */
+public class SearchCounters {
+    /*
+     * Instance variables
+     */
+
+    // The number of passes over the active cities
+    private long passes;
+
+    // The number of searches started from a city (calls to improve(t1))
+    private long improveCalls;
+
+    // The number of moves tried (calls to startAlgorithm)
+    private long startCalls;
+
+    // The sum of the depths reached by the moves, in number of exchanged edges
+    private long depthSum;
+
+    // The deepest move tried, in number of exchanged edges
+    private long maxDepth;
+
+    // The number of candidates looked at when choosing the next y
+    private long candidatesExamined;
+
+    // The number of times no valid t could be chosen to close the tour
+    private long rejectedSelections;
+
+    // The number of improving moves applied
+    private long moves;
+
+    // The sum of the gains of the improving moves
+    private double totalGain;
+
+    // The length of the tour when the snapshot was taken
+    private double length;
+
+    /**
+     * Constructor with all the variables that form part of this structure
+     * @param long the number of passes
+     * @param long the number of searches started from a city
+     * @param long the number of moves tried
+     * @param long the sum of the depths reached by the moves
+     * @param long the deepest move tried
+     * @param long the number of candidates looked at
+     * @param long the number of rejected choices of t
+     * @param long the number of improving moves
+     * @param double the sum of their gains
+     * @param double the length of the tour
+     */
+    public SearchCounters(long passes, long improveCalls, long startCalls, long depthSum, long maxDepth,
+            long candidatesExamined, long rejectedSelections, long moves, double totalGain, double length) {
+        this.passes = passes;
+        this.improveCalls = improveCalls;
+        this.startCalls = startCalls;
+        this.depthSum = depthSum;
+        this.maxDepth = maxDepth;
+        this.candidatesExamined = candidatesExamined;
+        this.rejectedSelections = rejectedSelections;
+        this.moves = moves;
+        this.totalGain = totalGain;
+        this.length = length;
+    }
+
+    /**
+     * Getter that returns the number of passes over the active cities
+     * @param None
+     * @return long the number of passes
+     */
+    public long getPasses() {
+        return this.passes;
+    }
+
+    /**
+     * Getter that returns the number of searches started from a city
+     * @param None
+     * @return long the number of calls to improve(t1)
+     */
+    public long getImproveCalls() {
+        return this.improveCalls;
+    }
+
+    /**
+     * Getter that returns the number of moves tried
+     * @param None
+     * @return long the number of calls to startAlgorithm
+     */
+    public long getStartCalls() {
+        return this.startCalls;
+    }
+
+    /**
+     * Getter that returns the average depth reached by the moves
+     * @param None
+     * @return double the average number of exchanged edges, 0 if no move was tried
+     */
+    public double getAverageDepth() {
+        return startCalls == 0? 0: (double) depthSum / startCalls;
+    }
+
+    /**
+     * Getter that returns the deepest move tried
+     * @param None
+     * @return long the number of exchanged edges
+     */
+    public long getMaxDepth() {
+        return this.maxDepth;
+    }
+
+    /**
+     * Getter that returns the number of candidates looked at when choosing the next y
+     * @param None
+     * @return long the number of candidates
+     */
+    public long getCandidatesExamined() {
+        return this.candidatesExamined;
+    }
+
+    /**
+     * Getter that returns the number of times no valid t could be chosen to close the tour
+     * @param None
+     * @return long the number of rejections
+     */
+    public long getRejectedSelections() {
+        return this.rejectedSelections;
+    }
+
+    /**
+     * Getter that returns the number of improving moves applied
+     * @param None
+     * @return long the number of moves
+     */
+    public long getMoves() {
+        return this.moves;
+    }
+
+    /**
+     * Getter that returns the sum of the gains of the improving moves
+     * @param None
+     * @return double the total gain
+     */
+    public double getTotalGain() {
+        return this.totalGain;
+    }
+
+    /**
+     * Getter that returns the length of the tour when the snapshot was taken
+     * @param None
+     * @return double the length of the tour
+     */
+    public double getLength() {
+        return this.length;
+    }
+
+    /**
+     * This function returns a one-line summary of the counters
+     * @param None
+     * @return String the summary
+     */
+    public String toString() {
+        return String.format("%d passes, %d searches, %d moves tried (depth %.2f avg, %d max), "
+            + "%d candidates, %d rejected t, %d improving moves (gain %.2f), length %.2f",
+            passes, improveCalls, startCalls, getAverageDepth(), maxDepth,
+            candidatesExamined, rejectedSelections, moves, totalGain, length);
+    }
+
+}
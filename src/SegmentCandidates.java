@@ -0,0 +1,89 @@
+import java.nio.ByteOrder;
+
+import jdk.incubator.foreign.MemoryAccess;
+import jdk.incubator.foreign.MemorySegment;
+
+/**
+ * This class reads the candidate lists from a memory segment instead of
+ * arrays, with the layout of the sidecar of InstanceCache: the number of
+ * candidates of every city, then k slots per city. The segment can be native
+ * memory or a mapped sidecar (big-endian).
+ */
+public class SegmentCandidates extends CandidateSet {
+    /*
+     * Instance variables
+     */
+
+    // The memory that holds the lists
+    private MemorySegment memory;
+
+    // The offset of the counts in the segment
+    private long countsOffset;
+
+    // The offset of the candidates in the segment
+    private long neighborsOffset;
+
+    // The number of cities
+    private int cities;
+
+    // The byte order of the segment
+    private ByteOrder byteOrder;
+
+    /**
+     * Constructor that takes the segment and where the lists are in it
+     * @param MemorySegment the memory that holds the lists
+     * @param long the offset of the counts, the candidates follow them
+     * @param int the number of cities
+     * @param int the maximum number of candidates per city
+     * @param ByteOrder the byte order of the segment
+     */
+    public SegmentCandidates(MemorySegment memory, long offset, int cities, int k, ByteOrder byteOrder) {
+        super(k);
+        this.memory = memory;
+        this.countsOffset = offset;
+        this.neighborsOffset = offset + 4L * cities;
+        this.cities = cities;
+        this.byteOrder = byteOrder;
+    }
+
+    /**
+     * @see CandidateSet#size(int)
+     */
+    public int size(int city) {
+        return MemoryAccess.getIntAtOffset(memory, countsOffset + 4L * city, byteOrder);
+    }
+
+    /**
+     * @see CandidateSet#get(int, int)
+     */
+    public int get(int city, int i) {
+        return MemoryAccess.getIntAtOffset(memory, neighborsOffset + 4L * ((long) city * getK() + i), byteOrder);
+    }
+
+    /**
+     * Getter that returns a copy on the heap of the candidates of all the cities
+     * @param None
+     * @return int[] k consecutive slots per city
+     */
+    public int[] getNeighbors() {
+        int[] neighbors = new int[cities * getK()];
+        for(int i = 0; i < neighbors.length; ++i) {
+            neighbors[i] = MemoryAccess.getIntAtOffset(memory, neighborsOffset + 4L * i, byteOrder);
+        }
+        return neighbors;
+    }
+
+    /**
+     * Getter that returns a copy on the heap of the number of candidates of every city
+     * @param None
+     * @return int[] the counts
+     */
+    public int[] getCounts() {
+        int[] counts = new int[cities];
+        for(int city = 0; city < cities; ++city) {
+            counts[city] = size(city);
+        }
+        return counts;
+    }
+
+}
@@ -0,0 +1,60 @@
+import java.nio.ByteOrder;
+
+import jdk.incubator.foreign.MemoryAccess;
+import jdk.incubator.foreign.MemorySegment;
+
+/**
+ * This class computes the distances from coordinates kept in a memory
+ * segment. Nothing is cached, so an off-heap instance does not use any heap
+ * for its distances; the pairs the algorithm asks for are mostly candidate
+ * and tour edges, whose cities are near each other in the segment since the
+ * cities are numbered along a Hilbert curve.
+ */
+public class SegmentDistances implements DistanceProvider {
+    /*
+     * Instance variables
+     */
+
+    // The memory that holds the coordinates
+    private MemorySegment memory;
+
+    // The offset of the x coordinates in the segment
+    private long xsOffset;
+
+    // The offset of the y coordinates in the segment
+    private long ysOffset;
+
+    // The byte order of the segment
+    private ByteOrder byteOrder;
+
+    // How the distances are computed
+    private DistanceFunction function;
+
+    /**
+     * Constructor that takes the segment and where the coordinates are in it
+     * @param MemorySegment the memory that holds the coordinates
+     * @param long the offset of the x coordinates
+     * @param long the offset of the y coordinates
+     * @param ByteOrder the byte order of the segment
+     * @param DistanceFunction how the distances are computed
+     */
+    public SegmentDistances(MemorySegment memory, long xsOffset, long ysOffset, ByteOrder byteOrder, DistanceFunction function) {
+        this.memory = memory;
+        this.xsOffset = xsOffset;
+        this.ysOffset = ysOffset;
+        this.byteOrder = byteOrder;
+        this.function = function;
+    }
+
+    /**
+     * @see DistanceProvider#get(int, int)
+     */
+    public double get(int i, int j) {
+        return function.distance(
+            MemoryAccess.getDoubleAtOffset(memory, xsOffset + 8L * i, byteOrder),
+            MemoryAccess.getDoubleAtOffset(memory, ysOffset + 8L * i, byteOrder),
+            MemoryAccess.getDoubleAtOffset(memory, xsOffset + 8L * j, byteOrder),
+            MemoryAccess.getDoubleAtOffset(memory, ysOffset + 8L * j, byteOrder));
+    }
+
+}
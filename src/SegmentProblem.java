@@ -0,0 +1,196 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import jdk.incubator.foreign.MemoryAccess;
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+
+/**
+ * This class is an instance whose data is kept off the heap, in a memory
+ * segment of the jdk.incubator.foreign module: the ids, the coordinates and
+ * the candidate lists, with the layout of the sidecar of InstanceCache, and
+ * the tours of the solvers (SegmentTour). The segment is either the sidecar
+ * itself, mapped read-only, or native memory the data is copied to.
+ *
+ * The solvers reach it through the same getters and factories as the other
+ * instances. getXs, getYs and getIds return copies on the heap, for the code
+ * that needs whole arrays (the construction of the starting tour, the ids of
+ * the final tour): every call copies the whole array, in O(n) time and heap,
+ * so the callers take each array once and pass it down.
+ *
+ * The memory is released by the garbage collector once the instance is no
+ * longer used. It needs java --add-modules jdk.incubator.foreign.
+ */
+public class SegmentProblem extends Problem {
+    /*
+     * Instance variables
+     */
+
+    // The memory that holds the instance
+    private MemorySegment memory;
+
+    // The byte order of the segment
+    private ByteOrder byteOrder;
+
+    // The number of cities
+    private int size;
+
+    // The offset of the ids in the segment, the other arrays follow them
+    private long offset;
+
+    // The candidate lists, read from the segment
+    private CandidateSet candidates;
+
+    /**
+     * Constructor that takes the segment and where the instance is in it
+     * @param MemorySegment the memory that holds the instance
+     * @param long the offset of the ids
+     * @param int the number of cities
+     * @param int the number of candidates per city
+     * @param DistanceFunction how the distances are computed
+     * @param ByteOrder the byte order of the segment
+     */
+    private SegmentProblem(MemorySegment memory, long offset, int size, int k, DistanceFunction function, ByteOrder byteOrder) {
+        super(function);
+        this.memory = memory;
+        this.byteOrder = byteOrder;
+        this.size = size;
+        this.offset = offset;
+        this.candidates = new SegmentCandidates(memory, offset + 20L * size, size, k, byteOrder);
+    }
+
+    /**
+     * This function maps the sidecar of an instance, building it first if it is
+     * missing, stale or has no candidate lists for k. The instance is returned as
+     * a Problem, so the callers do not depend on the foreign module
+     * @param File the .tsp file
+     * @param int the number of candidate neighbors per city
+     * @return Problem the instance, backed by the mapped sidecar
+     * @throws IOException if the sidecar can not be written or mapped
+     */
+    public static Problem map(File file, int k) throws IOException {
+        File sidecar = InstanceCache.prepare(file, k);
+        long start = System.currentTimeMillis();
+        MemorySegment memory = MemorySegment.mapFile(sidecar.toPath(), 0, sidecar.length(),
+            FileChannel.MapMode.READ_ONLY, ResourceScope.newImplicitScope());
+
+        // The header ends with the number of cities, k and the distance function
+        int header = InstanceCache.HEADER_SIZE;
+        int size = MemoryAccess.getIntAtOffset(memory, header - 12, ByteOrder.BIG_ENDIAN);
+        int cachedK = MemoryAccess.getIntAtOffset(memory, header - 8, ByteOrder.BIG_ENDIAN);
+        int metric = MemoryAccess.getIntAtOffset(memory, header - 4, ByteOrder.BIG_ENDIAN);
+        SegmentProblem problem = new SegmentProblem(memory, header, size, cachedK, DistanceFunction.values()[metric], ByteOrder.BIG_ENDIAN);
+        // The lists are read from the mapped sidecar when they are used, this is only the time to map it
+        problem.setCandidateTime(System.currentTimeMillis() - start, true);
+        return problem;
+    }
+
+    /**
+     * This function copies an instance to native memory
+     * @param Problem the instance
+     * @return Problem the copy, backed by native memory
+     */
+    public static Problem copyOf(Problem problem) {
+        int size = problem.size();
+        CandidateSet candidates = problem.getCandidates();
+        int k = candidates.getK();
+        MemorySegment memory = MemorySegment.allocateNative(24L * size + 4L * size * k, 8, ResourceScope.newImplicitScope());
+        ByteOrder byteOrder = ByteOrder.nativeOrder();
+
+        int[] ids = problem.getIds();
+        double[] xs = problem.getXs();
+        double[] ys = problem.getYs();
+        for(int city = 0; city < size; ++city) {
+            MemoryAccess.setIntAtOffset(memory, 4L * city, byteOrder, ids[city]);
+            MemoryAccess.setDoubleAtOffset(memory, 4L * size + 8L * city, byteOrder, xs[city]);
+            MemoryAccess.setDoubleAtOffset(memory, 12L * size + 8L * city, byteOrder, ys[city]);
+            MemoryAccess.setIntAtOffset(memory, 20L * size + 4L * city, byteOrder, candidates.size(city));
+            for(int i = 0; i < candidates.size(city); ++i) {
+                MemoryAccess.setIntAtOffset(memory, 24L * size + 4L * ((long) city * k + i), byteOrder, candidates.get(city, i));
+            }
+        }
+        SegmentProblem copy = new SegmentProblem(memory, 0, size, k, problem.getDistanceFunction(), byteOrder);
+        copy.setCandidateTime(problem.getCandidateBuildTime(), problem.areCandidatesCached());
+        return copy;
+    }
+
+    /**
+     * @see Problem#createDistanceProvider()
+     */
+    public DistanceProvider createDistanceProvider() {
+        return new SegmentDistances(memory, offset + 4L * size, offset + 12L * size, byteOrder, getDistanceFunction());
+    }
+
+    /**
+     * @see Problem#createTour(int[])
+     */
+    public Tour createTour(int[] order) {
+        if(order.length <= LinKernighan.ARRAY_TOUR_LIMIT) {
+            return super.createTour(order);
+        }
+        return new SegmentTour(order);
+    }
+
+    /**
+     * @see Problem#size()
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Getter that returns a copy on the heap of the x coordinates of the cities,
+     * a new one at every call
+     * @param None
+     * @return double[] the x coordinates
+     */
+    public double[] getXs() {
+        return doubles(offset + 4L * size);
+    }
+
+    /**
+     * Getter that returns a copy on the heap of the y coordinates of the cities,
+     * a new one at every call
+     * @param None
+     * @return double[] the y coordinates
+     */
+    public double[] getYs() {
+        return doubles(offset + 12L * size);
+    }
+
+    /**
+     * Getter that returns a copy on the heap of the ids of the cities, a new one at every call
+     * @param None
+     * @return int[] the ids
+     */
+    public int[] getIds() {
+        int[] ids = new int[size];
+        for(int city = 0; city < size; ++city) {
+            ids[city] = MemoryAccess.getIntAtOffset(memory, offset + 4L * city, byteOrder);
+        }
+        return ids;
+    }
+
+    /**
+     * @see Problem#getCandidates()
+     */
+    public CandidateSet getCandidates() {
+        return this.candidates;
+    }
+
+    /**
+     * This function copies an array of coordinates from the segment to the heap
+     * @param long the offset of the array
+     * @return double[] the coordinates
+     */
+    private double[] doubles(long from) {
+        double[] values = new double[size];
+        for(int city = 0; city < size; ++city) {
+            values[city] = MemoryAccess.getDoubleAtOffset(memory, from + 8L * city, byteOrder);
+        }
+        return values;
+    }
+
+}
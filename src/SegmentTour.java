@@ -0,0 +1,112 @@
+import jdk.incubator.foreign.MemoryAccess;
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+
+/**
+ * This class is a two-level doubly-linked list whose data of the cities is
+ * kept off the heap, in a native memory segment of the jdk.incubator.foreign
+ * module: the four ints of a city (suc, pred, rank and segment) are stored
+ * next to each other, so a city is read in a single cache line, followed by
+ * the order the segments are rebuilt from. Only the data of the segments,
+ * about sqrt(n) entries, stays on the heap.
+ *
+ * The memory is released by the garbage collector once the tour is no longer
+ * used. It needs java --add-modules jdk.incubator.foreign.
+ */
+public class SegmentTour extends TwoLevelListTour {
+    /*
+     * Instance variables
+     */
+
+    // The data of the cities, CITY_BYTES per city, then the order
+    private MemorySegment memory;
+
+    // The offset of the order in the segment
+    private long orderOffset;
+
+    // The number of bytes of a city: suc, pred, rank and segment
+    private static final long CITY_BYTES = 16;
+
+    /**
+     * Constructor that builds the segments from an order of the cities
+     * @param int[] the cities in the order they are visited
+     */
+    public SegmentTour(int[] order) {
+        super(order.length);
+        this.orderOffset = CITY_BYTES * order.length;
+        this.memory = MemorySegment.allocateNative(orderOffset + 4L * order.length, CITY_BYTES,
+            ResourceScope.newImplicitScope());
+        load(order);
+    }
+
+    /**
+     * @see TwoLevelListTour#suc(int)
+     */
+    protected int suc(int city) {
+        return MemoryAccess.getIntAtOffset(memory, CITY_BYTES * city);
+    }
+
+    /**
+     * @see TwoLevelListTour#setSuc(int, int)
+     */
+    protected void setSuc(int city, int next) {
+        MemoryAccess.setIntAtOffset(memory, CITY_BYTES * city, next);
+    }
+
+    /**
+     * @see TwoLevelListTour#pred(int)
+     */
+    protected int pred(int city) {
+        return MemoryAccess.getIntAtOffset(memory, CITY_BYTES * city + 4);
+    }
+
+    /**
+     * @see TwoLevelListTour#setPred(int, int)
+     */
+    protected void setPred(int city, int previous) {
+        MemoryAccess.setIntAtOffset(memory, CITY_BYTES * city + 4, previous);
+    }
+
+    /**
+     * @see TwoLevelListTour#rank(int)
+     */
+    protected int rank(int city) {
+        return MemoryAccess.getIntAtOffset(memory, CITY_BYTES * city + 8);
+    }
+
+    /**
+     * @see TwoLevelListTour#setRank(int, int)
+     */
+    protected void setRank(int city, int value) {
+        MemoryAccess.setIntAtOffset(memory, CITY_BYTES * city + 8, value);
+    }
+
+    /**
+     * @see TwoLevelListTour#segment(int)
+     */
+    protected int segment(int city) {
+        return MemoryAccess.getIntAtOffset(memory, CITY_BYTES * city + 12);
+    }
+
+    /**
+     * @see TwoLevelListTour#setSegment(int, int)
+     */
+    protected void setSegment(int city, int s) {
+        MemoryAccess.setIntAtOffset(memory, CITY_BYTES * city + 12, s);
+    }
+
+    /**
+     * @see TwoLevelListTour#order(int)
+     */
+    protected int order(int i) {
+        return MemoryAccess.getIntAtOffset(memory, orderOffset + 4L * i);
+    }
+
+    /**
+     * @see TwoLevelListTour#setOrder(int, int)
+     */
+    protected void setOrder(int i, int city) {
+        MemoryAccess.setIntAtOffset(memory, orderOffset + 4L * i, city);
+    }
+
+}
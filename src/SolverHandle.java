@@ -0,0 +1,253 @@
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class runs a Lin-Kernighan search in the background and gives access
+ * to the best tour found so far at any moment. A new snapshot is taken when
+ * the tour is shorter than the last one, checked every PUBLISH_INTERVAL
+ * searches inside the passes and after every pass, and is pushed to the
+ * listeners.
+ *
+ * The search can be cancelled, it then stops at the next city it looks at.
+ * A deadline can be given when the solve starts, and await(timeout) cancels
+ * the search when the time is up, so the thread of the solve never outlives
+ * the time given to it by more than one search from a city.
+ */
+public class SolverHandle {
+    /*
+     * Instance variables
+     */
+
+    // The search, only used by the thread of the solve after the start
+    private LinKernighan lk;
+
+    // The time (in ms since the epoch) at which the solve started
+    private long start;
+
+    // The best tour found so far
+    private volatile TourSnapshot best;
+
+    // The listeners notified of every better tour
+    private List<ImprovementListener> listeners;
+
+    // Released when the solve is over
+    private CountDownLatch done;
+
+    // The error that ended the solve, null if there is none
+    private volatile Throwable failure;
+
+    // Tours have to be shorter by more than this to count as better
+    private static final double EPSILON = 1e-7;
+
+    /**
+     * Constructor that wraps a search, the solve starts with start
+     * @param LinKernighan the search, with its starting tour
+     */
+    private SolverHandle(LinKernighan lk) {
+        this.lk = lk;
+        this.start = System.currentTimeMillis();
+        this.listeners = new CopyOnWriteArrayList<ImprovementListener>();
+        this.done = new CountDownLatch(1);
+        this.best = new TourSnapshot(lk.getTour(), lk.getLength(), 0, lk.isFinished());
+    }
+
+    /**
+     * This function starts a solve on its own daemon thread
+     * @param LinKernighan the search, with its starting tour
+     * @param long the soft time limit in ms from now, 0 for no limit
+     * @return SolverHandle the handle of the solve
+     */
+    public static SolverHandle start(LinKernighan lk, long timeLimit) {
+        final SolverHandle handle = new SolverHandle(lk);
+        handle.setTimeLimit(timeLimit);
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                handle.run();
+            }
+        }, "lin-kernighan");
+        thread.setDaemon(true);
+        thread.start();
+        return handle;
+    }
+
+    /**
+     * This function starts a solve on an executor, for instance the pool of a service
+     * @param LinKernighan the search, with its starting tour
+     * @param long the soft time limit in ms from now, 0 for no limit
+     * @param Executor the executor that runs the solve
+     * @return SolverHandle the handle of the solve
+     */
+    public static SolverHandle start(LinKernighan lk, long timeLimit, Executor executor) {
+        final SolverHandle handle = new SolverHandle(lk);
+        handle.setTimeLimit(timeLimit);
+        executor.execute(new Runnable() {
+            public void run() {
+                handle.run();
+            }
+        });
+        return handle;
+    }
+
+    /**
+     * This function sets the deadline of the search from a time limit
+     * @param long the time limit in ms from now, 0 for no limit
+     * @return void
+     */
+    private void setTimeLimit(long timeLimit) {
+        if(timeLimit > 0) {
+            lk.setDeadline(start + timeLimit);
+        }
+    }
+
+    /**
+     * This function runs the search pass by pass, taking a snapshot whenever the
+     * tour has improved, in the middle of a pass or at its end
+     * @param None
+     * @return void
+     */
+    private void run() {
+        lk.setProgressHook(new Runnable() {
+            public void run() {
+                if(lk.getLength() < best.getLength() - EPSILON) {
+                    publish(false);
+                }
+            }
+        });
+        try {
+            while(!lk.isFinished() && !lk.isExpired()) {
+                lk.runPass();
+                if(lk.getLength() < best.getLength() - EPSILON) {
+                    publish(false);
+                }
+            }
+            publish(lk.isFinished());
+        } catch(Throwable e) {
+            failure = e;
+        } finally {
+            lk.setProgressHook(null);
+            done.countDown();
+        }
+    }
+
+    /**
+     * This function takes a snapshot of the current tour and notifies the listeners.
+     * A listener that fails is reported and does not stop the solve
+     * @param boolean whether this is the final tour of a solve that reached a local optimum
+     * @return void
+     */
+    private void publish(boolean finished) {
+        TourSnapshot snapshot = new TourSnapshot(lk.getTour(), lk.getLength(),
+            System.currentTimeMillis() - start, finished);
+        boolean better = snapshot.getLength() < best.getLength() - EPSILON;
+        best = snapshot;
+        if(!better) {
+            return;
+        }
+        for(ImprovementListener listener: listeners) {
+            try {
+                listener.improved(snapshot);
+            } catch(RuntimeException e) {
+                System.err.println("An improvement listener has failed: " + e);
+            }
+        }
+    }
+
+    /**
+     * This function registers a listener for the better tours found from now on
+     * @param ImprovementListener the listener
+     * @return void
+     */
+    public void addListener(ImprovementListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * This function unregisters a listener
+     * @param ImprovementListener the listener
+     * @return void
+     */
+    public void removeListener(ImprovementListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Getter that returns the best tour found so far
+     * @param None
+     * @return TourSnapshot the best tour
+     */
+    public TourSnapshot getBest() {
+        return this.best;
+    }
+
+    /**
+     * Getter that returns the live counters of the search
+     * @param None
+     * @return SearchCounters the last snapshot of the counters
+     */
+    public SearchCounters getCounters() {
+        return this.lk.getCounters();
+    }
+
+    /**
+     * This function asks the search to stop, the best tour stays available
+     * @param None
+     * @return void
+     */
+    public void cancel() {
+        lk.cancel();
+    }
+
+    /**
+     * This function checks whether the solve is over
+     * @param None
+     * @return boolean true if the search has stopped
+     */
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    /**
+     * This function waits for the end of the solve
+     * @param None
+     * @return TourSnapshot the final tour
+     * @throws InterruptedException if the waiting thread is interrupted
+     * @throws IllegalStateException if the solve has failed
+     */
+    public TourSnapshot await() throws InterruptedException {
+        done.await();
+        return result();
+    }
+
+    /**
+     * This function waits for the end of the solve, but never longer than the
+     * timeout: then it cancels the search and returns the best tour so far,
+     * without waiting for the thread of the solve to notice the cancel
+     * @param long the timeout
+     * @param TimeUnit the unit of the timeout
+     * @return TourSnapshot the best tour
+     * @throws InterruptedException if the waiting thread is interrupted
+     * @throws IllegalStateException if the solve has failed
+     */
+    public TourSnapshot await(long timeout, TimeUnit unit) throws InterruptedException {
+        if(!done.await(timeout, unit)) {
+            cancel();
+        }
+        return result();
+    }
+
+    /**
+     * This function returns the best tour, or the error of the solve
+     * @param None
+     * @return TourSnapshot the best tour
+     */
+    private TourSnapshot result() {
+        if(failure != null) {
+            throw new IllegalStateException("The solve has failed", failure);
+        }
+        return best;
+    }
+
+}
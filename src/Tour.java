@@ -0,0 +1,57 @@
+/**
+ * This interface represents a tour as a cyclic sequence of cities that can
+ * be modified by reversing paths. Only the cycle matters: an implementation
+ * is free to change the orientation of the tour when it flips, so the callers
+ * have to query next and prev again after every flip.
+ */
+public interface Tour {
+
+    /**
+     * Getter that returns the number of cities in the tour
+     * @param None
+     * @return int the number of cities
+     */
+    public int size();
+
+    /**
+     * This function returns the city visited after a given one
+     * @param int the city
+     * @return int the next city in the tour
+     */
+    public int next(int city);
+
+    /**
+     * This function returns the city visited before a given one
+     * @param int the city
+     * @return int the previous city in the tour
+     */
+    public int prev(int city);
+
+    /**
+     * This function checks whether b lies on the path that goes from a to c
+     * following the tour forward (both ends included)
+     * @param int the start of the path
+     * @param int the city to check
+     * @param int the end of the path
+     * @return boolean true if b is between a and c
+     */
+    public boolean between(int a, int b, int c);
+
+    /**
+     * This function reverses the path that goes from a to b following the tour forward.
+     * After the flip the edges (prev(a), a) and (b, next(b)) are replaced by
+     * (prev(a), b) and (a, next(b))
+     * @param int the first city of the path
+     * @param int the last city of the path
+     * @return void
+     */
+    public void flip(int a, int b);
+
+    /**
+     * This function returns the cities in the order they are visited
+     * @param None
+     * @return int[] the cities of the tour
+     */
+    public int[] toArray();
+
+}
@@ -0,0 +1,145 @@
+import java.util.Arrays;
+
+/**
+ * This class builds starting tours that are much better than a random one,
+ * so the algorithm does not waste its time removing obviously bad edges.
+ * All of them use a spatial index and run in about O(n log n).
+ */
+public class TourConstruction {
+
+    /**
+     * This function builds a tour that always goes to the nearest city not visited yet
+     * @param double[] the x coordinates of the cities
+     * @param double[] the y coordinates of the cities
+     * @return int[] the cities in the order they are visited
+     */
+    public static int[] nearestNeighbor(double[] xs, double[] ys) {
+        int size = xs.length;
+        int[] order = new int[size];
+        int[] nearest = new int[1];
+        KdTree tree = new KdTree(xs, ys);
+
+        int city = 0;
+        for(int i = 0; i < size; ++i) {
+            order[i] = city;
+            tree.remove(city);
+            if(i + 1 < size) {
+                tree.nearest(city, 1, nearest);
+                city = nearest[0];
+            }
+        }
+        return order;
+    }
+
+    /**
+     * This function builds a tour with the greedy edge matching: the candidate edges
+     * are added from the shortest to the longest as long as no city gets more than
+     * two edges and no cycle is closed. The resulting paths are then joined going
+     * from the end of each one to the nearest free end
+     * @param double[] the x coordinates of the cities
+     * @param double[] the y coordinates of the cities
+     * @param CandidateSet the candidate edges
+     * @param DistanceProvider the distances between cities
+     * @return int[] the cities in the order they are visited
+     */
+    public static int[] greedy(double[] xs, double[] ys, CandidateSet candidates, DistanceProvider distances) {
+        int size = xs.length;
+        int k = candidates.getK();
+
+        // Sort the candidate edges by length, packing (length, edge) in a long.
+        // The bits of a positive float sort like the float itself
+        long[] edges = new long[size * k];
+        int m = 0;
+        for(int city = 0; city < size; ++city) {
+            for(int i = 0; i < candidates.size(city); ++i) {
+                float d = (float) distances.get(city, candidates.get(city, i));
+                edges[m++] = ((long) Float.floatToIntBits(d) << 32) | (city * k + i);
+            }
+        }
+        Arrays.sort(edges, 0, m);
+
+        // Both neighbors of every city in the paths, -1 when there is none
+        int[] adjacent = new int[2 * size];
+        Arrays.fill(adjacent, -1);
+        int[] degree = new int[size];
+        int[] parent = new int[size];
+        for(int i = 0; i < size; ++i) {
+            parent[i] = i;
+        }
+
+        for(int e = 0; e < m; ++e) {
+            int index = (int) edges[e];
+            int a = index / k;
+            int b = candidates.get(a, index % k);
+            if(degree[a] == 2 || degree[b] == 2) {
+                continue;
+            }
+            int ra = find(parent, a);
+            int rb = find(parent, b);
+            if(ra == rb) {
+                continue; // It would close a cycle (or the edge is already there)
+            }
+            parent[ra] = rb;
+            adjacent[2 * a + degree[a]++] = b;
+            adjacent[2 * b + degree[b]++] = a;
+        }
+
+        // Join the paths: only their ends stay in the tree
+        KdTree tree = new KdTree(xs, ys);
+        int start = -1;
+        for(int city = 0; city < size; ++city) {
+            if(degree[city] == 2) {
+                tree.remove(city);
+            } else if(start == -1) {
+                start = city;
+            }
+        }
+
+        int[] order = new int[size];
+        int[] nearest = new int[1];
+        int count = 0;
+        while(true) {
+            // Walk the path that starts at start
+            int previous = -1;
+            int city = start;
+            while(city != -1) {
+                order[count++] = city;
+                tree.remove(city);
+                int next = adjacent[2 * city] != previous? adjacent[2 * city]: adjacent[2 * city + 1];
+                previous = city;
+                city = next;
+            }
+            if(count == size) {
+                break;
+            }
+            tree.nearest(previous, 1, nearest);
+            start = nearest[0];
+        }
+        return order;
+    }
+
+    /**
+     * This function finds the representative of a city in the union-find structure
+     * @param int[] the parent of every city
+     * @param int the city
+     * @return int the representative
+     */
+    private static int find(int[] parent, int city) {
+        while(parent[city] != city) {
+            parent[city] = parent[parent[city]]; // Path halving
+            city = parent[city];
+        }
+        return city;
+    }
+
+    /**
+     * This function builds a tour that visits the cities along a Hilbert curve
+     * @param double[] the x coordinates of the cities
+     * @param double[] the y coordinates of the cities
+     * @return int[] the cities in the order they are visited
+     */
+    public static int[] spaceFillingCurve(double[] xs, double[] ys) {
+        return HilbertCurve.order(xs, ys);
+    }
+
+}
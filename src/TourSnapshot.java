@@ -0,0 +1,107 @@
+/**
+ * This class is an immutable copy of a tour found by a solve, with the
+ * moment it was found. It can be kept and shared between threads freely.
+ */
+public class TourSnapshot {
+    /*
+     * Instance variables
+     */
+
+    // The cities in the order they are visited, never modified after the construction
+    private int[] tour;
+
+    // The length of the tour
+    private double length;
+
+    // The time since the start of the solve (in ms)
+    private long elapsed;
+
+    // Whether the tour is a local optimum, that is the solve is over
+    private boolean finished;
+
+    /**
+     * Constructor with all the variables that form part of this structure
+     * @param int[] the cities in the order they are visited, owned by the snapshot from now on
+     * @param double the length of the tour
+     * @param long the time since the start of the solve in ms
+     * @param boolean whether the tour is a local optimum
+     */
+    public TourSnapshot(int[] tour, double length, long elapsed, boolean finished) {
+        this.tour = tour;
+        this.length = length;
+        this.elapsed = elapsed;
+        this.finished = finished;
+    }
+
+    /**
+     * Getter that returns a copy of the tour
+     * @param None
+     * @return int[] the cities in the order they are visited
+     */
+    public int[] getTour() {
+        return this.tour.clone();
+    }
+
+    /**
+     * Getter that returns a city of the tour without copying it
+     * @param int the position in the tour
+     * @return int the city visited at that position
+     */
+    public int getCity(int i) {
+        return this.tour[i];
+    }
+
+    /**
+     * Getter that returns the number of cities of the tour
+     * @param None
+     * @return int the number of cities
+     */
+    public int size() {
+        return this.tour.length;
+    }
+
+    /**
+     * Getter that returns the length of the tour
+     * @param None
+     * @return double the length of the tour
+     */
+    public double getLength() {
+        return this.length;
+    }
+
+    /**
+     * Getter that returns when the tour was found
+     * @param None
+     * @return long the time since the start of the solve in ms
+     */
+    public long getElapsed() {
+        return this.elapsed;
+    }
+
+    /**
+     * Getter that returns whether the tour is a local optimum
+     * @param None
+     * @return boolean true if the solve reached a local optimum
+     */
+    public boolean isFinished() {
+        return this.finished;
+    }
+
+    /**
+     * This function returns the length and the cities of the tour
+     * @param None
+     * @return String the tour
+     */
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        str.append('[').append(length).append("] : ");
+        for(int i = 0; i < tour.length; ++i) {
+            if(i > 0) {
+                str.append(" => ");
+            }
+            str.append(tour[i]);
+        }
+        return str.toString();
+    }
+
+}
@@ -0,0 +1,417 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * This class reads a file in TSPLIB format straight into primitive arrays.
+ * The file is memory-mapped and the numbers are parsed from the bytes, so
+ * loading does not create an object per line or per city.
+ *
+ * The header is read up to NODE_COORD_SECTION: DIMENSION sizes the arrays
+ * and EDGE_WEIGHT_TYPE chooses the distance function. Then one "[id] [x] [y]"
+ * line per city follows until EOF or the end of the file. Files without a
+ * header, that start directly with the cities, are also accepted.
+ */
+public class TsplibParser {
+    /*
+     * Instance variables
+     */
+
+    // The name of the instance, null if the header does not have one
+    private String name;
+
+    // How the distances are computed, from EDGE_WEIGHT_TYPE
+    private DistanceFunction function = DistanceFunction.EUCLIDEAN;
+
+    // The number of cities announced by the header, 0 if unknown
+    private int dimension;
+
+    // The ids of the cities
+    private int[] ids;
+
+    // The x coordinates of the cities
+    private double[] xs;
+
+    // The y coordinates of the cities
+    private double[] ys;
+
+    // The number of cities read so far
+    private int size;
+
+    // The content of the file
+    private MappedByteBuffer buffer;
+
+    // The position of the next byte to read
+    private int position;
+
+    // The number of bytes of the file
+    private int limit;
+
+    // The powers of ten that are exact as doubles
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Constructor that reads and parses a file
+     * @param File the file to read
+     * @throws IOException if the file can not be read
+     * @throws IllegalArgumentException if the file is not a valid instance
+     */
+    public TsplibParser(File file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            if(length > Integer.MAX_VALUE) {
+                throw new IOException("The file is too big to be mapped: " + file);
+            }
+            this.limit = (int) length;
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            parseHeader();
+            parseCities();
+            this.buffer = null;
+        }
+    }
+
+    /**
+     * This function reads the "KEY : VALUE" lines of the header up to the
+     * start of the coordinates
+     * @param None
+     * @return void
+     */
+    private void parseHeader() {
+        while(true) {
+            skipWhitespace();
+            if(position >= limit || !isLetter(buffer.get(position))) {
+                break; // The end of the file, or cities without a header
+            }
+
+            String keyword = readKeyword();
+            if(keyword.equals("NODE_COORD_SECTION")) {
+                skipLine();
+                break;
+            } else if(keyword.equals("EOF")) {
+                position = limit;
+                break;
+            } else if(keyword.endsWith("_SECTION")) {
+                throw new IllegalArgumentException("The section " + keyword + " is not supported");
+            }
+
+            String value = readValue();
+            if(keyword.equals("DIMENSION")) {
+                try {
+                    dimension = Integer.parseInt(value);
+                } catch(NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid DIMENSION: " + value);
+                }
+            } else if(keyword.equals("NAME")) {
+                name = value;
+            } else if(keyword.equals("EDGE_WEIGHT_TYPE")) {
+                function = DistanceFunction.fromEdgeWeightType(value);
+            }
+        }
+
+        int capacity = dimension > 0? dimension: 1024;
+        ids = new int[capacity];
+        xs = new double[capacity];
+        ys = new double[capacity];
+    }
+
+    /**
+     * This function reads the cities until EOF or the end of the file
+     * @param None
+     * @return void
+     */
+    private void parseCities() {
+        while(true) {
+            skipWhitespace();
+            if(position >= limit) {
+                break;
+            }
+            if(isLetter(buffer.get(position))) {
+                String keyword = readKeyword();
+                if(keyword.equals("EOF")) {
+                    break;
+                }
+                throw new IllegalArgumentException("Unexpected " + keyword + " after city " + size);
+            }
+
+            if(size == ids.length) {
+                ids = Arrays.copyOf(ids, 2 * size);
+                xs = Arrays.copyOf(xs, 2 * size);
+                ys = Arrays.copyOf(ys, 2 * size);
+            }
+            ids[size] = (int) parseNumber(true);
+            skipSpaces();
+            xs[size] = parseNumber(false);
+            skipSpaces();
+            ys[size] = parseNumber(false);
+            skipSpaces();
+            if(position < limit && !isEndOfLine(buffer.get(position))) {
+                throw new IllegalArgumentException("Malformed coordinates for city " + (size + 1));
+            }
+            size++;
+        }
+
+        if(dimension > 0 && size != dimension) {
+            throw new IllegalArgumentException("DIMENSION is " + dimension + " but the file has " + size + " cities");
+        }
+        if(size < ids.length) {
+            ids = Arrays.copyOf(ids, size);
+            xs = Arrays.copyOf(xs, size);
+            ys = Arrays.copyOf(ys, size);
+        }
+    }
+
+    /**
+     * This function parses a decimal number, with an optional sign, fraction and exponent.
+     * Numbers of up to 15 significant digits and small exponents are computed exactly
+     * from the digits (one correctly rounded division), the rest fall back to
+     * Double.parseDouble, so the result is always the same as parsing the text
+     * @param boolean true if the number has to be an integer
+     * @return double the number
+     */
+    private double parseNumber(boolean integer) {
+        int start = position;
+        boolean negative = false;
+        if(position < limit && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+            negative = buffer.get(position) == '-';
+            position++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0; // The number of digits after the point
+        boolean point = false;
+        boolean any = false;
+        while(position < limit) {
+            byte b = buffer.get(position);
+            if(b >= '0' && b <= '9') {
+                any = true;
+                if(mantissa != 0 || b != '0') {
+                    digits++;
+                }
+                if(digits <= 18) {
+                    mantissa = 10 * mantissa + (b - '0');
+                    if(point) scale++;
+                } else if(!point) {
+                    scale--; // Dropped digit before the point
+                }
+            } else if(b == '.' && !point && !integer) {
+                point = true;
+            } else {
+                break;
+            }
+            position++;
+        }
+        if(!any) {
+            throw new IllegalArgumentException("Malformed number for city " + (size + 1));
+        }
+
+        if(position < limit && !integer && (buffer.get(position) == 'e' || buffer.get(position) == 'E')) {
+            return slowNumber(start); // Rare in TSPLIB files
+        }
+        int exponent = -scale;
+
+        if(digits <= 15 && exponent >= -22 && exponent <= 22) {
+            double value = exponent < 0? mantissa / POWERS_OF_TEN[-exponent]: mantissa * POWERS_OF_TEN[exponent];
+            return negative? -value: value;
+        }
+        if(integer) {
+            throw new IllegalArgumentException("Id out of range for city " + (size + 1));
+        }
+        return slowNumber(start);
+    }
+
+    /**
+     * This function parses a number with Double.parseDouble, for the cases
+     * that can not be computed exactly from the digits
+     * @param int the position of the first byte of the number
+     * @return double the number
+     */
+    private double slowNumber(int start) {
+        position = start;
+        while(position < limit && !isWhitespace(buffer.get(position))) {
+            position++;
+        }
+        String text = readString(start, position);
+        try {
+            return Double.parseDouble(text);
+        } catch(NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed number " + text + " for city " + (size + 1));
+        }
+    }
+
+    /**
+     * This function reads a keyword: letters, digits and underscores
+     * @param None
+     * @return String the keyword
+     */
+    private String readKeyword() {
+        int start = position;
+        while(position < limit) {
+            byte b = buffer.get(position);
+            if(!isLetter(b) && !(b >= '0' && b <= '9') && b != '_') {
+                break;
+            }
+            position++;
+        }
+        return readString(start, position);
+    }
+
+    /**
+     * This function reads the value of a header line, after an optional colon
+     * @param None
+     * @return String the value without the surrounding spaces
+     */
+    private String readValue() {
+        skipSpaces();
+        if(position < limit && buffer.get(position) == ':') {
+            position++;
+        }
+        skipSpaces();
+        int start = position;
+        skipLine();
+        int end = position;
+        while(end > start && isWhitespace(buffer.get(end - 1))) {
+            end--;
+        }
+        return readString(start, end);
+    }
+
+    /**
+     * This function copies a range of the file into a string
+     * @param int the first position
+     * @param int the position after the last one
+     * @return String the text
+     */
+    private String readString(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for(int i = 0; i < bytes.length; ++i) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * This function moves to the start of the next line
+     * @param None
+     * @return void
+     */
+    private void skipLine() {
+        while(position < limit && buffer.get(position) != '\n') {
+            position++;
+        }
+        if(position < limit) {
+            position++;
+        }
+    }
+
+    /**
+     * This function skips the spaces and tabs, staying on the same line
+     * @param None
+     * @return void
+     */
+    private void skipSpaces() {
+        while(position < limit && (buffer.get(position) == ' ' || buffer.get(position) == '\t')) {
+            position++;
+        }
+    }
+
+    /**
+     * This function skips all the whitespace, including the line breaks
+     * @param None
+     * @return void
+     */
+    private void skipWhitespace() {
+        while(position < limit && isWhitespace(buffer.get(position))) {
+            position++;
+        }
+    }
+
+    /**
+     * This function checks whether a byte is a space, a tab or a line break
+     * @param byte the byte
+     * @return boolean true if it is whitespace
+     */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    /**
+     * This function checks whether a byte ends a line
+     * @param byte the byte
+     * @return boolean true if it is a line break
+     */
+    private static boolean isEndOfLine(byte b) {
+        return b == '\r' || b == '\n';
+    }
+
+    /**
+     * This function checks whether a byte is an ASCII letter
+     * @param byte the byte
+     * @return boolean true if it is a letter
+     */
+    private static boolean isLetter(byte b) {
+        return (b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z');
+    }
+
+    /**
+     * Getter that returns the name of the instance
+     * @param None
+     * @return String the name, null if the file does not have one
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Getter that returns how the distances are computed
+     * @param None
+     * @return DistanceFunction the function of EDGE_WEIGHT_TYPE, EUCLIDEAN without one
+     */
+    public DistanceFunction getDistanceFunction() {
+        return this.function;
+    }
+
+    /**
+     * Getter that returns the number of cities
+     * @param None
+     * @return int the number of cities
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Getter that returns the ids of the cities
+     * @param None
+     * @return int[] the ids
+     */
+    public int[] getIds() {
+        return this.ids;
+    }
+
+    /**
+     * Getter that returns the x coordinates of the cities
+     * @param None
+     * @return double[] the x coordinates
+     */
+    public double[] getXs() {
+        return this.xs;
+    }
+
+    /**
+     * Getter that returns the y coordinates of the cities
+     * @param None
+     * @return double[] the y coordinates
+     */
+    public double[] getYs() {
+        return this.ys;
+    }
+
+}
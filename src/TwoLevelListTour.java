@@ -0,0 +1,475 @@
+/**
+ * This class represents the tour as a two-level doubly-linked list: the
+ * cities are grouped in about sqrt(n) segments, and every segment has a
+ * reversal bit. Reversing a path only splits the segments at its ends and
+ * reverses the order (and the bits) of the segments in between, so a flip
+ * costs O(sqrt(n)) instead of O(n).
+ *
+ * Inside a segment the cities are linked by suc/pred and numbered by rank
+ * in the internal direction; when the reversal bit is set the segment is
+ * traversed from its last city to its first one.
+ *
+ * The data of the cities is only read and written through the accessors
+ * (suc, setSuc, ...), so a subclass can keep it somewhere else than in the
+ * arrays of this class, as SegmentTour does off the heap. The data of the
+ * segments is small (about sqrt(n)) and always stays in arrays.
+ */
+public class TwoLevelListTour implements Tour {
+    /*
+     * Instance variables
+     */
+
+    // The number of cities
+    private int size;
+
+    // The number of cities per segment after a rebuild
+    private int groupSize;
+
+    // The next city inside the segment (internal direction)
+    private int[] suc;
+
+    // The previous city inside the segment (internal direction)
+    private int[] pred;
+
+    // The rank of every city inside its segment (increases following suc)
+    private int[] rank;
+
+    // The segment of every city
+    private int[] segment;
+
+    // The first city of every segment (internal direction)
+    private int[] first;
+
+    // The last city of every segment (internal direction)
+    private int[] last;
+
+    // Whether every segment is traversed from last to first
+    private boolean[] reversed;
+
+    // The next segment in the tour
+    private int[] segNext;
+
+    // The previous segment in the tour
+    private int[] segPrev;
+
+    // The order of every segment in the tour, starting from an arbitrary one
+    private int[] segRank;
+
+    // The number of segments in use
+    private int segments;
+
+    // Scratch array to collect the segments of a path when it is reversed
+    private int[] run;
+
+    // Scratch array to hold the order of the cities when the segments are rebuilt, and the initial one
+    private int[] order;
+
+    /**
+     * Constructor that takes the initial order of the cities
+     * @param int[] the cities in the order they are visited
+     */
+    public TwoLevelListTour(int[] order) {
+        this(order.length);
+        this.suc = new int[size];
+        this.pred = new int[size];
+        this.rank = new int[size];
+        this.segment = new int[size];
+        this.order = new int[size];
+        load(order);
+    }
+
+    /**
+     * Constructor for the subclasses that keep the data of the cities elsewhere:
+     * it only creates the arrays of the segments, the subclass then calls load
+     * @param int the number of cities
+     */
+    protected TwoLevelListTour(int size) {
+        this.size = size;
+        this.groupSize = Math.max(8, (int) Math.sqrt(size));
+
+        // Every flip splits at most two segments, a rebuild happens when there is no room left
+        int capacity = 3 * ((size + groupSize - 1) / groupSize) + 4;
+        this.first = new int[capacity];
+        this.last = new int[capacity];
+        this.reversed = new boolean[capacity];
+        this.segNext = new int[capacity];
+        this.segPrev = new int[capacity];
+        this.segRank = new int[capacity];
+        this.run = new int[capacity];
+    }
+
+    /**
+     * This function creates the segments from the initial order of the cities
+     * @param int[] the cities in the order they are visited
+     * @return void
+     */
+    protected final void load(int[] order) {
+        for(int i = 0; i < size; ++i) {
+            setOrder(i, order[i]);
+        }
+        build();
+    }
+
+    /**
+     * This function (re)creates the segments from the order of the cities kept by setOrder
+     * @param None
+     * @return void
+     */
+    private void build() {
+        segments = (size + groupSize - 1) / groupSize;
+        for(int s = 0; s < segments; ++s) {
+            int from = s * groupSize;
+            int to = Math.min(size, from + groupSize) - 1;
+            for(int i = from; i <= to; ++i) {
+                int city = order(i);
+                setSegment(city, s);
+                setRank(city, i - from);
+                setSuc(city, i < to? order(i + 1): -1);
+                setPred(city, i > from? order(i - 1): -1);
+            }
+            first[s] = order(from);
+            last[s] = order(to);
+            reversed[s] = false;
+            segNext[s] = s + 1 == segments? 0: s + 1;
+            segPrev[s] = s == 0? segments - 1: s - 1;
+            segRank[s] = s;
+        }
+    }
+
+    /**
+     * @see Tour#size()
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * This function returns the first city of a segment following the tour
+     * @param int the segment
+     * @return int the city
+     */
+    private int head(int s) {
+        return reversed[s]? last[s]: first[s];
+    }
+
+    /**
+     * This function returns the last city of a segment following the tour
+     * @param int the segment
+     * @return int the city
+     */
+    private int tail(int s) {
+        return reversed[s]? first[s]: last[s];
+    }
+
+    /**
+     * @see Tour#next(int)
+     */
+    public int next(int city) {
+        int s = segment(city);
+        if(city == tail(s)) {
+            return head(segNext[s]);
+        }
+        return reversed[s]? pred(city): suc(city);
+    }
+
+    /**
+     * @see Tour#prev(int)
+     */
+    public int prev(int city) {
+        int s = segment(city);
+        if(city == head(s)) {
+            return tail(segPrev[s]);
+        }
+        return reversed[s]? suc(city): pred(city);
+    }
+
+    /**
+     * This function returns a key that grows following the tour, starting
+     * from the first segment
+     * @param int the city
+     * @return long the key of the city
+     */
+    private long sequence(int city) {
+        int s = segment(city);
+        return ((long) segRank[s] << 32) + (reversed[s]? Integer.MAX_VALUE - rank(city): rank(city));
+    }
+
+    /**
+     * @see Tour#between(int, int, int)
+     */
+    public boolean between(int a, int b, int c) {
+        long sa = sequence(a), sb = sequence(b), sc = sequence(c);
+        if(sa <= sc) {
+            return sa <= sb && sb <= sc;
+        }
+        return sb >= sa || sb <= sc;
+    }
+
+    /**
+     * @see Tour#flip(int, int)
+     */
+    public void flip(int a, int b) {
+        if(a == b || next(b) == a) {
+            return; // Reversing a single city or the whole tour does not change the cycle
+        }
+        if(segments + 2 > first.length) {
+            fill();
+            build();
+        }
+
+        int c = next(b);
+        split(a);
+        split(c);
+
+        // Now the path is made of the whole segments from the one of a to the one of b
+        int from = segment(a);
+        int to = segment(b);
+        int length = segRank[to] - segRank[from];
+        if(length < 0) length += segments;
+        length++;
+
+        if(2 * length > segments) {
+            // Reverse the other segments instead, it results in the same cycle
+            from = segment(c);
+            to = segPrev[segment(a)];
+            length = segments - length;
+        }
+        reverseSegments(from, to, length);
+    }
+
+    /**
+     * This function splits the segment of a city so the city becomes the head of a segment
+     * @param int the city
+     * @return void
+     */
+    private void split(int city) {
+        int s = segment(city);
+        if(head(s) == city) {
+            return;
+        }
+
+        // The cities of s that come before the city (following the tour), in internal terms
+        int beforeFirst, beforeLast, afterFirst, afterLast;
+        if(!reversed[s]) {
+            beforeFirst = first[s];
+            beforeLast = pred(city);
+            afterFirst = city;
+            afterLast = last[s];
+        } else {
+            beforeFirst = suc(city);
+            beforeLast = last[s];
+            afterFirst = first[s];
+            afterLast = city;
+        }
+
+        int beforeSize = rank(beforeLast) - rank(beforeFirst) + 1;
+        int afterSize = rank(afterLast) - rank(afterFirst) + 1;
+
+        // Move the smaller part into a new segment
+        int t = segments++;
+        reversed[t] = reversed[s];
+        boolean moveBefore = beforeSize <= afterSize;
+        int moveFirst = moveBefore? beforeFirst: afterFirst;
+        int moveLast = moveBefore? beforeLast: afterLast;
+        for(int x = moveFirst;; x = suc(x)) {
+            setSegment(x, t);
+            if(x == moveLast) break;
+        }
+        first[t] = moveFirst;
+        last[t] = moveLast;
+        if(moveBefore == !reversed[s]) {
+            // The moved part is at the internal start of s
+            first[s] = suc(moveLast);
+        } else {
+            last[s] = pred(moveFirst);
+        }
+        setSuc(last[t], -1);
+        setPred(first[t], -1);
+        setSuc(last[s], -1);
+        setPred(first[s], -1);
+
+        // Link t in the tour, before s when it holds the cities that come before
+        if(moveBefore) {
+            int p = segPrev[s];
+            segNext[p] = t;
+            segPrev[t] = p;
+            segNext[t] = s;
+            segPrev[s] = t;
+        } else {
+            int n = segNext[s];
+            segNext[s] = t;
+            segPrev[t] = s;
+            segNext[t] = n;
+            segPrev[n] = t;
+        }
+        renumber(s);
+    }
+
+    /**
+     * This function reverses the order of a run of consecutive segments
+     * and toggles their reversal bits
+     * @param int the first segment of the run
+     * @param int the last segment of the run
+     * @param int the number of segments in the run
+     * @return void
+     */
+    private void reverseSegments(int from, int to, int length) {
+        int before = segPrev[from];
+        int after = segNext[to];
+        for(int i = 0, s = from; i < length; ++i, s = segNext[s]) {
+            run[i] = s;
+        }
+
+        // Link them back in the opposite order
+        int p = before;
+        for(int i = length - 1; i >= 0; --i) {
+            int s = run[i];
+            reversed[s] = !reversed[s];
+            segNext[p] = s;
+            segPrev[s] = p;
+            p = s;
+        }
+        segNext[p] = after;
+        segPrev[after] = p;
+        renumber(before);
+    }
+
+    /**
+     * This function numbers the segments following the tour
+     * @param int the segment that gets the rank 0
+     * @return void
+     */
+    private void renumber(int start) {
+        int s = start;
+        for(int i = 0; i < segments; ++i) {
+            segRank[s] = i;
+            s = segNext[s];
+        }
+    }
+
+    /**
+     * @see Tour#toArray()
+     */
+    public int[] toArray() {
+        int[] order = new int[size];
+        int i = 0;
+        for(int city = head(0); i < size; city = next(city)) {
+            order[i++] = city;
+        }
+        return order;
+    }
+
+    /**
+     * This function keeps the cities in the order they are visited with setOrder
+     * @param None
+     * @return void
+     */
+    private void fill() {
+        int s = 0;
+        int i = 0;
+        for(int count = 0; count < segments; ++count) {
+            if(reversed[s]) {
+                for(int x = last[s]; x != -1; x = pred(x)) setOrder(i++, x);
+            } else {
+                for(int x = first[s]; x != -1; x = suc(x)) setOrder(i++, x);
+            }
+            s = segNext[s];
+        }
+    }
+
+    /**
+     * This function returns the next city inside the segment of a city (internal direction)
+     * @param int the city
+     * @return int the next city, -1 if the city is the last one of its segment
+     */
+    protected int suc(int city) {
+        return suc[city];
+    }
+
+    /**
+     * This function sets the next city inside the segment of a city (internal direction)
+     * @param int the city
+     * @param int the next city, -1 for none
+     * @return void
+     */
+    protected void setSuc(int city, int next) {
+        suc[city] = next;
+    }
+
+    /**
+     * This function returns the previous city inside the segment of a city (internal direction)
+     * @param int the city
+     * @return int the previous city, -1 if the city is the first one of its segment
+     */
+    protected int pred(int city) {
+        return pred[city];
+    }
+
+    /**
+     * This function sets the previous city inside the segment of a city (internal direction)
+     * @param int the city
+     * @param int the previous city, -1 for none
+     * @return void
+     */
+    protected void setPred(int city, int previous) {
+        pred[city] = previous;
+    }
+
+    /**
+     * This function returns the rank of a city inside its segment
+     * @param int the city
+     * @return int the rank
+     */
+    protected int rank(int city) {
+        return rank[city];
+    }
+
+    /**
+     * This function sets the rank of a city inside its segment
+     * @param int the city
+     * @param int the rank
+     * @return void
+     */
+    protected void setRank(int city, int value) {
+        rank[city] = value;
+    }
+
+    /**
+     * This function returns the segment of a city
+     * @param int the city
+     * @return int the segment
+     */
+    protected int segment(int city) {
+        return segment[city];
+    }
+
+    /**
+     * This function sets the segment of a city
+     * @param int the city
+     * @param int the segment
+     * @return void
+     */
+    protected void setSegment(int city, int s) {
+        segment[city] = s;
+    }
+
+    /**
+     * This function returns a city of the order the segments are rebuilt from
+     * @param int the position in the order
+     * @return int the city
+     */
+    protected int order(int i) {
+        return order[i];
+    }
+
+    /**
+     * This function sets a city of the order the segments are rebuilt from
+     * @param int the position in the order
+     * @param int the city
+     * @return void
+     */
+    protected void setOrder(int i, int city) {
+        order[i] = city;
+    }
+
+}
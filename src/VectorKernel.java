@@ -0,0 +1,189 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * This class is the SIMD implementation of the distance kernels, built on the
+ * jdk.incubator.vector module: it handles as many cities at a time as the
+ * widest vectors of the processor hold, and the remainder of a block one by
+ * one. The operations are the same as the scalar ones and in the same order,
+ * so the results are exactly the same. GEO distances have no vector version
+ * (the trigonometry is not worth it) and are computed by the scalar code.
+ *
+ * It needs java --add-modules jdk.incubator.vector, DistanceKernel only loads
+ * it when the module is there.
+ */
+public class VectorKernel extends DistanceKernel {
+
+    // The widest vectors of doubles of the processor
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    // The smallest double whose ulp is 1, adding it rounds a smaller positive value to an integer
+    private static final double TWO_TO_52 = 4503599627370496.0;
+
+    /**
+     * Constructor, the kernel is obtained with DistanceKernel.get
+     */
+    public VectorKernel() {
+    }
+
+    /**
+     * @see DistanceKernel#getName()
+     */
+    public String getName() {
+        return "vector (" + SPECIES.length() + " lanes)";
+    }
+
+    /**
+     * @see DistanceKernel#squaredDistances(double, double, double[], double[], int, int, double[])
+     */
+    public void squaredDistances(double x, double y, double[] xs, double[] ys, int from, int to, double[] out) {
+        DoubleVector vx = DoubleVector.broadcast(SPECIES, x);
+        DoubleVector vy = DoubleVector.broadcast(SPECIES, y);
+        int bound = from + SPECIES.loopBound(to - from);
+        int i = from;
+        for(; i < bound; i += SPECIES.length()) {
+            squared(vx, vy, xs, ys, i).intoArray(out, i);
+        }
+        super.squaredDistances(x, y, xs, ys, i, to, out);
+    }
+
+    /**
+     * @see DistanceKernel#distances(DistanceFunction, double, double, double[], double[], int, int, double[])
+     */
+    public void distances(DistanceFunction function, double x, double y, double[] xs, double[] ys, int from, int to, double[] out) {
+        if(function == DistanceFunction.GEO) {
+            super.distances(function, x, y, xs, ys, from, to, out);
+            return;
+        }
+        DoubleVector vx = DoubleVector.broadcast(SPECIES, x);
+        DoubleVector vy = DoubleVector.broadcast(SPECIES, y);
+        int bound = from + SPECIES.loopBound(to - from);
+        int i = from;
+        for(; i < bound; i += SPECIES.length()) {
+            DoubleVector d = squared(vx, vy, xs, ys, i);
+            switch(function) {
+            case EUCLIDEAN:
+                d = d.lanewise(VectorOperators.SQRT);
+                break;
+            case EUC_2D:
+                d = truncate(d.lanewise(VectorOperators.SQRT).add(0.5));
+                break;
+            case CEIL_2D:
+                d = d.lanewise(VectorOperators.SQRT);
+                d = roundUp(truncate(d), d);
+                break;
+            default: // ATT
+                d = d.div(10.0).lanewise(VectorOperators.SQRT);
+                d = roundUp(truncate(d.add(0.5)), d);
+                break;
+            }
+            d.intoArray(out, i);
+        }
+        super.distances(function, x, y, xs, ys, i, to, out);
+    }
+
+    /**
+     * This function computes the squared distances from a point to the cities of one vector
+     * @param DoubleVector the x coordinate of the point in every lane
+     * @param DoubleVector the y coordinate of the point in every lane
+     * @param double[] the x coordinates of the cities
+     * @param double[] the y coordinates of the cities
+     * @param int the first city
+     * @return DoubleVector the squared distances
+     */
+    private static DoubleVector squared(DoubleVector vx, DoubleVector vy, double[] xs, double[] ys, int i) {
+        DoubleVector dx = vx.sub(DoubleVector.fromArray(SPECIES, xs, i));
+        DoubleVector dy = vy.sub(DoubleVector.fromArray(SPECIES, ys, i));
+        return dx.mul(dx).add(dy.mul(dy));
+    }
+
+    /**
+     * This function drops the fractional part of positive values, as a cast to int does.
+     * Adding and taking away 2^52 rounds to the nearest integer (the conversions to long
+     * are not compiled to vector instructions), then the values rounded up are corrected
+     * @param DoubleVector the values, from 0 to 2^52
+     * @return DoubleVector the values truncated
+     */
+    private static DoubleVector truncate(DoubleVector v) {
+        DoubleVector rounded = v.add(TWO_TO_52).sub(TWO_TO_52);
+        return rounded.lanewise(VectorOperators.SUB, 1.0, rounded.compare(VectorOperators.GT, v));
+    }
+
+    /**
+     * This function adds 1 to the truncated values that are below the original ones
+     * @param DoubleVector the truncated values
+     * @param DoubleVector the original values
+     * @return DoubleVector the values rounded up
+     */
+    private static DoubleVector roundUp(DoubleVector truncated, DoubleVector v) {
+        return truncated.lanewise(VectorOperators.ADD, 1.0, truncated.lt(v));
+    }
+
+    /**
+     * @see DistanceKernel#argmin(double[], int, int)
+     */
+    public int argmin(double[] values, int from, int to) {
+        if(to <= from) {
+            return -1;
+        }
+
+        // First the minimum with a lane-wise minimum, then the first lane that holds it
+        int bound = from + SPECIES.loopBound(to - from);
+        DoubleVector lanes = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+        int i = from;
+        for(; i < bound; i += SPECIES.length()) {
+            lanes = lanes.min(DoubleVector.fromArray(SPECIES, values, i));
+        }
+        double min = lanes.reduceLanes(VectorOperators.MIN);
+        for(; i < to; ++i) {
+            min = Math.min(min, values[i]);
+        }
+
+        for(i = from; i < bound; i += SPECIES.length()) {
+            VectorMask<Double> found = DoubleVector.fromArray(SPECIES, values, i).eq(min);
+            if(found.anyTrue()) {
+                return i + found.firstTrue();
+            }
+        }
+        for(; i < to; ++i) {
+            if(values[i] == min) {
+                return i;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * @see DistanceKernel#nearest(double, double, double[], double[], int, int, int, int[], double[])
+     */
+    public int nearest(double x, double y, double[] xs, double[] ys, int from, int to, int k, int[] result, double[] best) {
+        if(k <= 0) {
+            return 0;
+        }
+        DoubleVector vx = DoubleVector.broadcast(SPECIES, x);
+        DoubleVector vy = DoubleVector.broadcast(SPECIES, y);
+        int count = 0;
+        int bound = from + SPECIES.loopBound(to - from);
+        int i = from;
+        for(; i < bound; i += SPECIES.length()) {
+            // Most blocks have no city nearer than the k-th one so far and are skipped at once
+            DoubleVector d = squared(vx, vy, xs, ys, i);
+            double limit = count == k? best[k - 1]: Double.POSITIVE_INFINITY;
+            if(!d.lt(limit).anyTrue()) {
+                continue;
+            }
+            for(int lane = 0; lane < SPECIES.length(); ++lane) {
+                count = insert(i + lane, d.lane(lane), k, result, best, count);
+            }
+        }
+        for(; i < to; ++i) {
+            double dx = x - xs[i];
+            double dy = y - ys[i];
+            count = insert(i, dx * dx + dy * dy, k, result, best, count);
+        }
+        return count;
+    }
+
+}